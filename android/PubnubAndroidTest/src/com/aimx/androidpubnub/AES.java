@@ -1,8 +1,11 @@
 package com.aimx.androidpubnub;
 
 import java.security.AlgorithmParameters;
+import java.security.MessageDigest;
 import java.security.SecureRandom;
 import java.security.spec.KeySpec;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 
 import javax.crypto.Cipher;
@@ -17,6 +20,118 @@ import javax.crypto.spec.SecretKeySpec;
  */
 class AES {
 
+	/** PBKDF2 parameters shared by encryption and decryption. */
+	private static final int ITERATION_COUNT = 1024, KEY_LENGTH = 128;
+	
+	/** Maximum number of derived keys kept in the cache. */
+	private static final int KEY_CACHE_SIZE = 32;
+	
+	/**
+	 * Derived keys, keyed by Base64 salt and a SHA-256 digest of the cipher
+	 * key, so the cipher key itself is not kept. In access order so the least
+	 * recently used key is evicted first.
+	 */
+	private static final Map<String, SecretKey> keyCache = new LinkedHashMap<String, SecretKey>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SecretKey> eldest) {
+			return size() > KEY_CACHE_SIZE;
+		}
+	};
+	
+	/** Salt reused by every encryption while session salt mode is on. */
+	private static byte[] sessionSalt;
+	
+	/**
+	 * Session salt mode. When enabled, a single random salt is generated for
+	 * the session and reused for every message, so the key is derived only
+	 * once. The salt is still sent with each message, so receivers do not
+	 * need to know about the mode.
+	 * 
+	 * @param boolean Enable or disable session salt mode.
+	 */
+	protected static synchronized void setSessionSalt(boolean enabled) {
+		if (!enabled) {
+			sessionSalt = null;
+		} else if (sessionSalt == null) {
+			sessionSalt = newSalt();
+		}
+	}
+	
+	/**
+	 * Drops every cached derived key.
+	 */
+	protected static void clearKeyCache() {
+		synchronized (keyCache) {
+			keyCache.clear();
+		}
+	}
+	
+	/**
+	 * 8 bytes random salt, or the session salt if session salt mode is on.
+	 * 
+	 * @return byte[] Salt.
+	 */
+	private static synchronized byte[] nextSalt() {
+		return sessionSalt != null ? sessionSalt : newSalt();
+	}
+	
+	private static synchronized boolean isSessionSalt(byte[] salt) {
+		return salt == sessionSalt;
+	}
+	
+	private static byte[] newSalt() {
+	    Random r = new SecureRandom();
+	    byte[] salt = new byte[8];
+	    r.nextBytes(salt);
+	    return salt;
+	}
+	
+	/**
+	 * AES key derived from the cipher key and salt with PBKDF2/HMAC+SHA1.
+	 * Derivation is expensive, so keys for salts that are seen again are
+	 * cached. A random salt is used only once, so its key is not cached, or
+	 * it would evict the keys that are reused.
+	 * 
+	 * @param String Cipher Key.
+	 * @param byte[] Salt.
+	 * @param String Base64 encoded salt.
+	 * @param boolean Whether to cache the key.
+	 * @return SecretKey AES key.
+	 * @throws Exception
+	 */
+	private static SecretKey deriveKey(String cipher_key, byte[] salt, String salt_encoded, boolean cache)
+			throws Exception {
+		
+		String cache_key = null;
+		if (cache) {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(cipher_key.getBytes("UTF-8"));
+			cache_key = salt_encoded + "," + new String(Base64Encoder.encode(digest));
+			synchronized (keyCache) {
+				SecretKey secret = keyCache.get(cache_key);
+				if (secret != null) {
+					return secret;
+				}
+			}
+		}
+		
+		// prepare to use PBKDF2/HMAC+SHA1
+		SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+		
+		// our key is 128 bits, and can be generated knowing the cipher key and salt
+		KeySpec spec = new PBEKeySpec(cipher_key.toCharArray(), salt, ITERATION_COUNT, KEY_LENGTH);
+		SecretKey skey = factory.generateSecret(spec);
+		SecretKey secret = new SecretKeySpec(skey.getEncoded(), "AES");
+		
+		if (cache) {
+			synchronized (keyCache) {
+				keyCache.put(cache_key, secret);
+			}
+		}
+		return secret;
+	}
+
 	/**
 	 * Cipher key (Password) based encryption with random salt and random IV
 	 * 
@@ -29,19 +144,10 @@ class AES {
 	        throws Exception {
 		
 	    // 8 bytes random salt generation
-	    Random r = new SecureRandom();
-	    byte[] salt = new byte[8];
-	    r.nextBytes(salt);
-	    
-	    int iteration_count = 1024, key_length = 128;
-	    
-	    // prepare to use PBKDF2/HMAC+SHA1
-	    SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
+	    byte[] salt = nextSalt();
+	    String salt_encoded = new String(Base64Encoder.encode(salt));
 	    
-	    // our key is 128 bits, and can be generated knowing the cipher key and salt
-	    KeySpec spec = new PBEKeySpec(cipher_key.toCharArray(), salt, iteration_count, key_length);
-	    SecretKey skey = factory.generateSecret(spec);
-	    SecretKey secret = new SecretKeySpec(skey.getEncoded(), "AES");
+	    SecretKey secret = deriveKey(cipher_key, salt, salt_encoded, isSessionSalt(salt));
 	 
 	    // given key above, our cipher will be AES-128-CBC
 	    Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");	// ISO10126Padding/PKCS5Padding
@@ -57,7 +163,6 @@ class AES {
 	    // Convert from byte array to base64 string
 	    String cipher_text_encoded = new String(Base64Encoder.encode(cipher_text));
 	    String iv_encoded = new String(Base64Encoder.encode(iv));
-	    String salt_encoded = new String(Base64Encoder.encode(salt));
 	    
 	    // Prepare message to send
 	    StringBuffer message_encrypted = new StringBuffer(cipher_text_encoded);
@@ -77,8 +182,6 @@ class AES {
 	protected static String decryptWithCipherKeySaltAndIV(String cipher_key, String message_encrypted)
     		throws Exception {
 		
-		int iteration_count = 1024, key_length = 128;
-		
 		// get ciphertext, iv, salt
 		String[] temp = message_encrypted.split(",");
 	    
@@ -86,13 +189,7 @@ class AES {
 	    byte[] cipher_text = Base64Encoder.decode(temp[0]);
 	    byte[] iv = Base64Encoder.decode(temp[1]);
 	    byte[] salt = Base64Encoder.decode(temp[2]);
-		// prepare to use PBKDF2/HMAC+SHA1
-		SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-		
-		// our key is 128 bits, and can be generated knowing the cipher key and salt
-		KeySpec spec = new PBEKeySpec(cipher_key.toCharArray(), salt, iteration_count, key_length);
-		SecretKey skey = factory.generateSecret(spec);
-		SecretKey secret = new SecretKeySpec(skey.getEncoded(), "AES");
+		SecretKey secret = deriveKey(cipher_key, salt, temp[2], true);
 		IvParameterSpec ivspec = new IvParameterSpec(iv);
 		
 		// given key above, our cipher will be AES-128-CBC
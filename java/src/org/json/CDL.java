@@ -31,9 +31,10 @@ SOFTWARE.
  * understood by most database, spreadsheet, and organizer programs.
  * <p>
  * Each row of text represents a row in a table or a data record. Each row
- * ends with a NEWLINE character. Each row contains one or more values.
- * Values are separated by commas. A value can contain any character except
- * for comma, unless is is wrapped in single quotes or double quotes.
+ * ends with a NEWLINE character, or a RETURN and a NEWLINE. Each row
+ * contains one or more values. Values are separated by commas. A value can
+ * contain any character except for comma, unless is is wrapped in single
+ * quotes or double quotes.
  * <p>
  * The first row usually contains the names of the columns.
  * <p>
@@ -55,7 +56,7 @@ public class CDL {
     private static String getValue(JSONTokener x) throws JSONException {
         char c;
         char q;
-        StringBuffer sb;
+        StringBuilder sb;
         do {
             c = x.next();
         } while (c == ' ' || c == '\t');
@@ -65,7 +66,7 @@ public class CDL {
         case '"':
         case '\'':
             q = c;
-            sb = new StringBuffer();
+            sb = new StringBuilder();
             for (;;) {
                 c = x.next();
                 if (c == q) {
@@ -108,6 +109,12 @@ public class CDL {
                 }
                 if (c != ' ') {
                     if (c == '\n' || c == '\r' || c == 0) {
+                        if (c == '\r') {
+                            c = x.next();
+                            if (c != '\n' && c != 0) {
+                                x.back();
+                            }
+                        }
                         return ja;
                     }
                     throw x.syntaxError("Bad character '" + c + "' (" +
@@ -142,7 +149,7 @@ public class CDL {
      * @return A string ending in NEWLINE.
      */
     public static String rowToString(JSONArray ja) {
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (int i = 0; i < ja.length(); i += 1) {
             if (i > 0) {
                 sb.append(',');
@@ -267,7 +274,7 @@ public class CDL {
         if (names == null || names.length() == 0) {
             return null;
         }
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (int i = 0; i < ja.length(); i += 1) {
             JSONObject jo = ja.optJSONObject(i);
             if (jo != null) {
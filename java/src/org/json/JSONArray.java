@@ -25,10 +25,10 @@ SOFTWARE.
 */
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Array;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
@@ -83,16 +83,16 @@ public class JSONArray {
 
 
     /**
-     * The arrayList where the JSONArray's properties are kept.
+     * The list where the JSONArray's properties are kept.
      */
-    private final ArrayList myArrayList;
+    private final JSONList myArrayList;
 
 
     /**
      * Construct an empty JSONArray.
      */
     public JSONArray() {
-        this.myArrayList = new ArrayList();
+        this.myArrayList = new JSONList();
     }
 
     /**
@@ -102,6 +102,21 @@ public class JSONArray {
      */
     public JSONArray(JSONTokener x) throws JSONException {
         this();
+        this.parse(x);
+    }
+
+
+    /**
+     * Read the values of an array from a JSONTokener into this JSONArray,
+     * which is empty.
+     * @param x A JSONTokener
+     * @throws JSONException If there is a syntax error.
+     */
+    void parse(JSONTokener x) throws JSONException {
+        if (x.maxDepth > 0) {
+            JSONParser.parse(x, this);
+            return;
+        }
         if (x.nextClean() != '[') {
             throw x.syntaxError("A JSONArray text must start with '['");
         }
@@ -150,7 +165,7 @@ public class JSONArray {
      * @param collection     A Collection.
      */
     public JSONArray(Collection collection) {
-        this.myArrayList = new ArrayList();
+        this.myArrayList = new JSONList();
         if (collection != null) {
             Iterator iter = collection.iterator();
             while (iter.hasNext()) {
@@ -178,6 +193,14 @@ public class JSONArray {
     }
 
 
+    /**
+     * Remove all of the values, keeping the storage for reuse.
+     */
+    void clear() {
+        this.myArrayList.clear();
+    }
+
+
     /**
      * Get the object value associated with an index.
      * @param index
@@ -593,9 +616,11 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(double value) throws JSONException {
-        Double d = new Double(value);
-        JSONObject.testValidity(d);
-        this.put(d);
+        if (Double.isInfinite(value) || Double.isNaN(value)) {
+            throw new JSONException(
+                "JSON does not allow non-finite numbers.");
+        }
+        this.myArrayList.addDouble(value);
         return this;
     }
 
@@ -607,7 +632,7 @@ public class JSONArray {
      * @return this.
      */
     public JSONArray put(int value) {
-        this.put(new Integer(value));
+        this.myArrayList.addInt(value);
         return this;
     }
 
@@ -782,6 +807,24 @@ public class JSONArray {
     }
 
 
+    /**
+     * Get the values of this JSONArray as a double[]. An array that was
+     * parsed or built from numbers only is copied in one step.
+     * @return The values.
+     * @throws JSONException If a value cannot be converted to a number.
+     */
+    public double[] toDoubleArray() throws JSONException {
+        double[] array = this.myArrayList.toDoubleArray();
+        if (array == null) {
+            array = new double[this.length()];
+            for (int i = 0; i < array.length; i += 1) {
+                array[i] = this.getDouble(i);
+            }
+        }
+        return array;
+    }
+
+
     /**
      * Produce a JSONObject by combining a JSONArray of names with the values
      * of this JSONArray.
@@ -803,6 +846,25 @@ public class JSONArray {
     }
 
 
+    /**
+     * Get the values of this JSONArray as a long[]. An array that was parsed
+     * or built from numbers only is copied in one step. Doubles are
+     * truncated.
+     * @return The values.
+     * @throws JSONException If a value cannot be converted to a number.
+     */
+    public long[] toLongArray() throws JSONException {
+        long[] array = this.myArrayList.toLongArray();
+        if (array == null) {
+            array = new long[this.length()];
+            for (int i = 0; i < array.length; i += 1) {
+                array[i] = this.getLong(i);
+            }
+        }
+        return array;
+    }
+
+
     /**
      * Make a JSON text of this JSONArray. For compactness, no
      * unnecessary whitespace is added. If it is not possible to produce a
@@ -854,6 +916,26 @@ public class JSONArray {
         return this.write(writer, 0, 0);
     }
 
+    /**
+     * Write the contents of the JSONArray as UTF-8 encoded JSON text to an
+     * OutputStream, without making a String first. For compactness, no
+     * whitespace is added.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param out The stream. It is flushed, but not closed.
+     * @throws JSONException
+     */
+    public void writeTo(OutputStream out) throws JSONException {
+        JSONByteSink sink = new JSONByteSink(out);
+        this.write(sink, 0, 0);
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
     /**
      * Write the contents of the JSONArray as JSON text to a writer. For
      * compactness, no whitespace is added.
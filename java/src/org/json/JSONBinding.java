@@ -0,0 +1,479 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONBinding maps the objects of one class to and from JSON text. The
+ * properties of the class are found once, by the same rules as the
+ * JSONObject(Object bean) constructor: a public getter <code>getName()</code>
+ * or <code>isName()</code> makes the key <code>"name"</code>, and a public
+ * setter <code>setName(value)</code> reads it back. The accessors are kept
+ * as method handles, so binding an object costs no more reflection.
+ * <p>
+ * An object can be written straight to JSON text, without building a
+ * JSONObject, and read straight from a JSONTokener, without building one
+ * either. For example:
+ * <pre>
+ * JSONBinding binding = JSONBinding.forClass(Event.class);
+ * String text = binding.toString(event);
+ * Event copy = (Event)binding.read(new JSONTokener(text));
+ * </pre>
+ * Reading needs a public no-argument constructor. Setters may take
+ * primitives and their wrappers, Strings, enums, JSONObjects, JSONArrays,
+ * Objects, and other classes that can be bound. Keys that have no setter
+ * are skipped.
+ * <p>
+ * Bindings are cached per class and are safe to share between threads.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public final class JSONBinding {
+
+    private static final ClassValue<JSONBinding> BINDINGS =
+        new ClassValue<JSONBinding>() {
+            protected JSONBinding computeValue(Class<?> type) {
+                return new JSONBinding(type);
+            }
+        };
+
+    private static final MethodType GETTER =
+        MethodType.methodType(Object.class, Object.class);
+
+    private static final MethodType SETTER =
+        MethodType.methodType(void.class, Object.class, Object.class);
+
+    /**
+     * A property of the class, with its getter, its setter, or both.
+     */
+    private static final class Property {
+        final String key;
+        MethodHandle getter;
+
+        /**
+         * The key as it is written: quoted, and followed by a colon.
+         */
+        final String quotedKey;
+        MethodHandle setter;
+        Class<?> type;
+
+        Property(String key) {
+            this.key = key;
+            this.quotedKey = JSONObject.quote(key) + ':';
+        }
+
+        /**
+         * Get the value of the property of a bean, or null if the getter
+         * fails.
+         */
+        Object get(Object bean) {
+            try {
+                return (Object)this.getter.invokeExact(bean);
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * The no-argument constructor, or null.
+     */
+    private final MethodHandle constructor;
+
+    /**
+     * The properties that have getters, in the order of getMethods.
+     */
+    private final Property[] getters;
+
+    private final Class<?> klass;
+
+    /**
+     * The properties that have setters, by key.
+     */
+    private final Map<String, Property> setters;
+
+
+    private JSONBinding(Class<?> klass) {
+        this.klass = klass;
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+// If klass is a System class then set includeSuperClass to false.
+
+        boolean includeSuperClass = klass.getClassLoader() != null;
+
+        Method[] methods = includeSuperClass
+                ? klass.getMethods()
+                : klass.getDeclaredMethods();
+        HashMap<String, Property> properties =
+            new HashMap<String, Property>();
+        ArrayList<Property> getters = new ArrayList<Property>();
+        HashMap<String, Property> setters = new HashMap<String, Property>();
+        for (int i = 0; i < methods.length; i += 1) {
+            Method method = methods[i];
+            if (!Modifier.isPublic(method.getModifiers())) {
+                continue;
+            }
+            String name = method.getName();
+            Class<?>[] parameters = method.getParameterTypes();
+            boolean isSetter = false;
+            String key = "";
+            if (name.startsWith("get")) {
+                if (!"getClass".equals(name) &&
+                        !"getDeclaringClass".equals(name)) {
+                    key = name.substring(3);
+                }
+            } else if (name.startsWith("is")) {
+                key = name.substring(2);
+            } else if (name.startsWith("set") && parameters.length == 1 &&
+                    !Modifier.isStatic(method.getModifiers())) {
+                key = name.substring(3);
+                isSetter = true;
+            }
+            if (key.length() == 0 || !Character.isUpperCase(key.charAt(0)) ||
+                    parameters.length != (isSetter ? 1 : 0)) {
+                continue;
+            }
+            key = propertyName(key);
+            Property property = properties.get(key);
+            if (property == null) {
+                property = new Property(key);
+                properties.put(key, property);
+            }
+            try {
+                MethodHandle handle = lookup.unreflect(method);
+                if (isSetter) {
+                    if (property.setter == null) {
+                        property.setter = handle.asType(SETTER);
+                        property.type = parameters[0];
+                        setters.put(key, property);
+                    }
+                } else if (property.getter == null) {
+                    if (Modifier.isStatic(method.getModifiers())) {
+                        handle = MethodHandles.dropArguments(handle, 0,
+                                Object.class);
+                    }
+                    property.getter = handle.asType(GETTER);
+                    getters.add(property);
+                }
+            } catch (Exception ignore) {
+            }
+        }
+        this.getters = getters.toArray(new Property[getters.size()]);
+        this.setters = setters;
+
+        MethodHandle constructor = null;
+        try {
+            constructor = lookup.findConstructor(klass,
+                    MethodType.methodType(void.class))
+                .asType(MethodType.methodType(Object.class));
+        } catch (Exception ignore) {
+        }
+        this.constructor = constructor;
+    }
+
+
+    /**
+     * Get the binding of a class.
+     * @param klass A class.
+     * @return The binding.
+     */
+    public static JSONBinding forClass(Class<?> klass) {
+        return BINDINGS.get(klass);
+    }
+
+
+    /**
+     * Whether JSONObject.wrap would turn an object into a JSONObject of its
+     * bean properties.
+     */
+    static boolean isBean(Object object) {
+        if (object == null || object instanceof JSONObject ||
+                object instanceof JSONArray || JSONObject.NULL.equals(object) ||
+                object instanceof JSONString || object instanceof Number ||
+                object instanceof Character || object instanceof Boolean ||
+                object instanceof String || object instanceof Collection ||
+                object instanceof Map || object.getClass().isArray()) {
+            return false;
+        }
+        return isBeanClass(object.getClass());
+    }
+
+
+    private static boolean isBeanClass(Class<?> klass) {
+        if (klass.isPrimitive() || klass.isArray() || klass.isEnum() ||
+                klass.isInterface() || klass.getClassLoader() == null) {
+            return false;
+        }
+        Package objectPackage = klass.getPackage();
+        String objectPackageName = objectPackage != null
+            ? objectPackage.getName()
+            : "";
+        return !objectPackageName.startsWith("java.") &&
+            !objectPackageName.startsWith("javax.") &&
+            !JSONObject.class.isAssignableFrom(klass) &&
+            !JSONArray.class.isAssignableFrom(klass);
+    }
+
+
+    /**
+     * Put the properties of a bean into a map, as JSONObject(Object bean)
+     * does.
+     */
+    void populate(Object bean, JSONMap map) {
+        for (int i = 0; i < this.getters.length; i += 1) {
+            Property property = this.getters[i];
+            Object result = property.get(bean);
+            if (result != null) {
+                map.put(property.key, JSONObject.wrap(result));
+            }
+        }
+    }
+
+
+    /**
+     * Make a key from the part of an accessor name after the prefix. If the
+     * second character is not upper case, then the first character is
+     * converted to lower case.
+     */
+    private static String propertyName(String key) {
+        if (key.length() == 1) {
+            return key.toLowerCase();
+        }
+        if (!Character.isUpperCase(key.charAt(1))) {
+            return key.substring(0, 1).toLowerCase() + key.substring(1);
+        }
+        return key;
+    }
+
+
+    /**
+     * Read a bean from a JSONTokener, without making a JSONObject.
+     * @param x A JSONTokener positioned at a JSON object.
+     * @return A new bean of this binding's class.
+     * @throws JSONException If there is a syntax error, if the class cannot
+     *  be constructed, or if a value does not fit its setter.
+     */
+    public Object read(JSONTokener x) throws JSONException {
+        if (this.constructor == null) {
+            throw new JSONException(this.klass.getName() +
+                " has no public no-argument constructor.");
+        }
+        Object bean;
+        try {
+            bean = (Object)this.constructor.invokeExact();
+        } catch (Throwable e) {
+            throw new JSONException(e);
+        }
+
+        char c;
+        if (x.nextClean() != '{') {
+            throw x.syntaxError("A JSONObject text must begin with '{'");
+        }
+        for (;;) {
+            c = x.nextClean();
+            switch (c) {
+            case 0:
+                throw x.syntaxError("A JSONObject text must end with '}'");
+            case '}':
+                return bean;
+            default:
+                x.back();
+            }
+            String key = x.nextKey();
+
+// The key is followed by ':'. We will also tolerate '=' or '=>'.
+
+            c = x.nextClean();
+            if (c == '=') {
+                if (x.next() != '>') {
+                    x.back();
+                }
+            } else if (c != ':') {
+                throw x.syntaxError("Expected a ':' after a key");
+            }
+
+            Property property = this.setters.get(key);
+            if (property == null) {
+                x.nextValue();
+            } else {
+                Object value = readValue(x, property);
+                if (value != null || !property.type.isPrimitive()) {
+                    try {
+                        property.setter.invokeExact(bean, value);
+                    } catch (Throwable e) {
+                        throw new JSONException(e);
+                    }
+                }
+            }
+
+// Pairs are separated by ','. We will also tolerate ';'.
+
+            switch (x.nextClean()) {
+            case ';':
+            case ',':
+                if (x.nextClean() == '}') {
+                    return bean;
+                }
+                x.back();
+                break;
+            case '}':
+                return bean;
+            default:
+                throw x.syntaxError("Expected a ',' or '}'");
+            }
+        }
+    }
+
+
+    /**
+     * Read the value of a property, converted to the type of its setter.
+     * @return The value, or null for a JSON null.
+     */
+    private static Object readValue(JSONTokener x, Property property)
+            throws JSONException {
+        Class<?> type = property.type;
+        if (isBeanClass(type)) {
+            char c = x.nextClean();
+            x.back();
+            if (c == '{') {
+                return forClass(type).read(x);
+            }
+        }
+        Object value = x.nextValue();
+        if (JSONObject.NULL.equals(value)) {
+            return null;
+        }
+        if (type == Object.class || type.isInstance(value)) {
+            return value;
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (value instanceof String) {
+            if (type.isEnum()) {
+                Object[] constants = type.getEnumConstants();
+                for (int i = 0; i < constants.length; i += 1) {
+                    if (((Enum<?>)constants[i]).name().equals(value)) {
+                        return constants[i];
+                    }
+                }
+            }
+            value = JSONObject.stringToValue((String)value);
+        }
+        if (value instanceof Number) {
+            Number number = (Number)value;
+            if (type == int.class || type == Integer.class) {
+                return Integer.valueOf(number.intValue());
+            }
+            if (type == long.class || type == Long.class) {
+                return Long.valueOf(number.longValue());
+            }
+            if (type == double.class || type == Double.class) {
+                return Double.valueOf(number.doubleValue());
+            }
+            if (type == float.class || type == Float.class) {
+                return Float.valueOf(number.floatValue());
+            }
+            if (type == short.class || type == Short.class) {
+                return Short.valueOf(number.shortValue());
+            }
+            if (type == byte.class || type == Byte.class) {
+                return Byte.valueOf(number.byteValue());
+            }
+        }
+        if (value instanceof Boolean &&
+                (type == boolean.class || type == Boolean.class)) {
+            return value;
+        }
+        throw new JSONException("JSONObject[" +
+            JSONObject.quote(property.key) + "] cannot be converted to " +
+            type.getName() + ".");
+    }
+
+
+    /**
+     * Make a JSON text of a bean, without making a JSONObject. The text is
+     * the same as that of <code>new JSONObject(bean)</code>.
+     * @param bean An object of this binding's class.
+     * @return The text.
+     * @throws JSONException If a value is an invalid number.
+     */
+    public String toString(Object bean) throws JSONException {
+        StringWriter sw = new StringWriter();
+        return this.write(bean, sw).toString();
+    }
+
+
+    /**
+     * Write a bean as JSON text, without making a JSONObject. For
+     * compactness, no whitespace is added.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     * @param bean An object of this binding's class.
+     * @param writer The writer.
+     * @return The writer.
+     * @throws JSONException
+     */
+    public Writer write(Object bean, Writer writer) throws JSONException {
+        try {
+            boolean commanate = false;
+            writer.write('{');
+            for (int i = 0; i < this.getters.length; i += 1) {
+                Property property = this.getters[i];
+                Object value = property.get(bean);
+                if (value == null) {
+                    continue;
+                }
+                if (commanate) {
+                    writer.write(',');
+                }
+                writer.write(property.quotedKey);
+                if (isBean(value)) {
+                    forClass(value.getClass()).write(value, writer);
+                } else {
+                    JSONObject.writeValue(writer, JSONObject.wrap(value), 0,
+                            0);
+                }
+                commanate = true;
+            }
+            writer.write('}');
+            return writer;
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONByteSink is a Writer that encodes what is written to it as UTF-8,
+ * straight into a growable byte array. JSONObject, JSONArray and JSONWriter
+ * can write to it like to any other Writer, and the text is then available
+ * as bytes without ever being made into a String. Unpaired surrogates are
+ * encoded as <code>?</code>, as String.getBytes does. That includes a high
+ * surrogate that is last when the sink is flushed or its bytes are read.
+ * <p>
+ * A sink can be <code>reset</code> and used again, keeping its buffer, so a
+ * thread that writes many messages allocates nothing once the buffer is big
+ * enough. For example:
+ * <pre>
+ * sink.reset();
+ * jsonobject.write(sink);
+ * cipher.doFinal(sink.buffer(), 0, sink.size());
+ * </pre>
+ * A sink made with an OutputStream instead sends its buffer to the stream
+ * whenever it fills up, and when it is flushed.
+ * <p>
+ * A JSONByteSink is not synchronized.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public class JSONByteSink extends Writer {
+
+    /**
+     * The most characters encoded between capacity checks.
+     */
+    private static final int CHUNK = 1024;
+
+    /**
+     * The encoded bytes.
+     */
+    private byte[] buffer;
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int count;
+
+    /**
+     * A high surrogate waiting for its low surrogate, or 0.
+     */
+    private char high;
+
+    /**
+     * The stream the buffer is drained to, or null.
+     */
+    private final OutputStream out;
+
+
+    /**
+     * Construct an empty JSONByteSink.
+     */
+    public JSONByteSink() {
+        this(256);
+    }
+
+
+    /**
+     * Construct an empty JSONByteSink.
+     * @param capacity The initial size of the buffer.
+     */
+    public JSONByteSink(int capacity) {
+        this.buffer = new byte[Math.max(capacity, 16)];
+        this.out = null;
+    }
+
+
+    /**
+     * Construct a JSONByteSink that writes to an OutputStream.
+     * @param out The stream.
+     */
+    public JSONByteSink(OutputStream out) {
+        this.buffer = new byte[8192];
+        this.out = out;
+    }
+
+
+    /**
+     * Get the buffer. The text is in its first <code>size()</code> bytes.
+     * The buffer is not copied, and may be replaced by later writes.
+     * @return The buffer.
+     */
+    public byte[] buffer() {
+        this.settle();
+        return this.buffer;
+    }
+
+
+    /**
+     * Flush the sink and close its stream, if it has one.
+     */
+    public void close() throws IOException {
+        if (this.out != null) {
+            this.flush();
+            this.out.close();
+        }
+    }
+
+
+    /**
+     * Make room for at least n more bytes, draining the buffer to the stream
+     * or growing it.
+     */
+    private void ensure(int n) throws IOException {
+        if (this.count + n <= this.buffer.length) {
+            return;
+        }
+        if (this.out != null) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+            if (n <= this.buffer.length) {
+                return;
+            }
+        }
+        int length = this.buffer.length * 2;
+        if (length < this.count + n) {
+            length = this.count + n;
+        }
+        byte[] newBuffer = new byte[length];
+        System.arraycopy(this.buffer, 0, newBuffer, 0, this.count);
+        this.buffer = newBuffer;
+    }
+
+
+    /**
+     * Encode a character. The caller has made room for 4 bytes.
+     */
+    private void encode(char c) {
+        byte[] buffer = this.buffer;
+        int i = this.count;
+        if (this.high != 0) {
+            if (c >= '\uDC00' && c <= '\uDFFF') {
+                int codePoint = Character.toCodePoint(this.high, c);
+                this.high = 0;
+                buffer[i] = (byte)(0xf0 | (codePoint >> 18));
+                buffer[i + 1] = (byte)(0x80 | ((codePoint >> 12) & 0x3f));
+                buffer[i + 2] = (byte)(0x80 | ((codePoint >> 6) & 0x3f));
+                buffer[i + 3] = (byte)(0x80 | (codePoint & 0x3f));
+                this.count = i + 4;
+                return;
+            }
+            this.high = 0;
+            buffer[i] = '?';
+            i += 1;
+        }
+        if (c < 0x80) {
+            buffer[i] = (byte)c;
+            this.count = i + 1;
+        } else if (c < 0x800) {
+            buffer[i] = (byte)(0xc0 | (c >> 6));
+            buffer[i + 1] = (byte)(0x80 | (c & 0x3f));
+            this.count = i + 2;
+        } else if (c >= '\uD800' && c <= '\uDBFF') {
+            this.high = c;
+            this.count = i;
+        } else if (c >= '\uDC00' && c <= '\uDFFF') {
+            buffer[i] = '?';
+            this.count = i + 1;
+        } else {
+            buffer[i] = (byte)(0xe0 | (c >> 12));
+            buffer[i + 1] = (byte)(0x80 | ((c >> 6) & 0x3f));
+            buffer[i + 2] = (byte)(0x80 | (c & 0x3f));
+            this.count = i + 3;
+        }
+    }
+
+
+    /**
+     * Encode a high surrogate that is still waiting for its low surrogate as
+     * <code>?</code>, since the text is about to be used.
+     */
+    private void settle() {
+        if (this.high == 0) {
+            return;
+        }
+        this.high = 0;
+        if (this.count == this.buffer.length) {
+            byte[] newBuffer = new byte[this.buffer.length * 2];
+            System.arraycopy(this.buffer, 0, newBuffer, 0, this.count);
+            this.buffer = newBuffer;
+        }
+        this.buffer[this.count] = '?';
+        this.count += 1;
+    }
+
+
+    /**
+     * Send the buffer to the stream, if there is one, and flush the stream.
+     */
+    public void flush() throws IOException {
+        this.settle();
+        if (this.out != null) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+            this.out.flush();
+        }
+    }
+
+
+    /**
+     * Empty the sink, keeping its buffer.
+     */
+    public void reset() {
+        this.count = 0;
+        this.high = 0;
+    }
+
+
+    /**
+     * Get the number of bytes in the buffer.
+     * @return The size.
+     */
+    public int size() {
+        this.settle();
+        return this.count;
+    }
+
+
+    /**
+     * Get a copy of the bytes in the buffer.
+     * @return The bytes.
+     */
+    public byte[] toByteArray() {
+        this.settle();
+        byte[] bytes = new byte[this.count];
+        System.arraycopy(this.buffer, 0, bytes, 0, this.count);
+        return bytes;
+    }
+
+
+    /**
+     * Decode the bytes in the buffer.
+     * @return The text.
+     */
+    public String toString() {
+        this.settle();
+        return new String(this.buffer, 0, this.count, JSONByteTokener.UTF8);
+    }
+
+
+    public void write(int c) throws IOException {
+        this.ensure(4);
+        this.encode((char)c);
+    }
+
+
+    public void write(char[] chars, int offset, int length)
+            throws IOException {
+        int end = offset + length;
+        while (offset < end) {
+            int n = Math.min(end - offset, CHUNK);
+            this.ensure(n * 3 + 1);
+            byte[] buffer = this.buffer;
+            int i = this.count;
+            int stop = offset + n;
+
+// Runs of ASCII are copied without going through encode.
+
+            while (offset < stop) {
+                char c = chars[offset];
+                if (c < 0x80 && this.high == 0) {
+                    buffer[i] = (byte)c;
+                    i += 1;
+                } else {
+                    this.count = i;
+                    this.encode(c);
+                    i = this.count;
+                }
+                offset += 1;
+            }
+            this.count = i;
+        }
+    }
+
+
+    public void write(String string) throws IOException {
+        this.write(string, 0, string.length());
+    }
+
+
+    public void write(String string, int offset, int length)
+            throws IOException {
+        int end = offset + length;
+        while (offset < end) {
+            int n = Math.min(end - offset, CHUNK);
+            this.ensure(n * 3 + 1);
+            byte[] buffer = this.buffer;
+            int i = this.count;
+            int stop = offset + n;
+            while (offset < stop) {
+                char c = string.charAt(offset);
+                if (c < 0x80 && this.high == 0) {
+                    buffer[i] = (byte)c;
+                    i += 1;
+                } else {
+                    this.count = i;
+                    this.encode(c);
+                    i = this.count;
+                }
+                offset += 1;
+            }
+            this.count = i;
+        }
+    }
+
+
+    /**
+     * Write the bytes in the buffer to an OutputStream.
+     * @param out The stream.
+     * @throws IOException
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        this.settle();
+        out.write(this.buffer, 0, this.count);
+    }
+}
@@ -0,0 +1,642 @@
+package org.json;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONByteTokener is a JSONTokener that reads UTF-8 encoded bytes directly,
+ * instead of reading characters one at a time from a Reader. Whitespace,
+ * unquoted values and the bodies of strings are scanned as runs of bytes and
+ * decoded in one step, and no line or character bookkeeping is done until an
+ * error message needs it. The JSONObject and JSONArray trees it produces are
+ * the same as those of a JSONTokener reading the same text.
+ * <p>
+ * For example:
+ * <pre>
+ * JSONArray response = new JSONArray(new JSONByteTokener(bytes));
+ * </pre>
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public class JSONByteTokener extends JSONTokener {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+/*
+ * The scans for the end of a string body and of a run of whitespace look at
+ * 8 bytes at a time, as a long: each byte that ends the scan gets its high
+ * bit set in a mask, and the lowest set bit gives the first of them. The
+ * masks are exact, since no step carries from one byte into the next.
+ */
+
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long LOWS = 0x7f7f7f7f7f7f7f7fL;
+    private static final long ONES = 0x0101010101010101L;
+    private static final long BACKSLASHES = ONES * '\\';
+    private static final long NEWLINES = ONES * '\n';
+    private static final long RETURNS = ONES * '\r';
+
+    /**
+     * Added to the low 7 bits of a byte, sets its high bit if the byte is
+     * above ' '.
+     */
+    private static final long ABOVE_SPACE = ONES * (0x80 - '!');
+
+    /**
+     * The characters that end an unquoted value.
+     */
+    private static final boolean[] DELIMITER = new boolean[128];
+    static {
+        String delimiters = ",:]}/\\\"[{;=#";
+        for (int i = 0; i < delimiters.length(); i += 1) {
+            DELIMITER[delimiters.charAt(i)] = true;
+        }
+    }
+
+    /**
+     * The source.
+     */
+    private final byte[] buffer;
+
+    /**
+     * Whether back() may be called.
+     */
+    private boolean canBack;
+
+    /**
+     * Whether the last next() reached the end of the source.
+     */
+    private boolean eof;
+
+    /**
+     * 1 if the position is in the middle of a surrogate pair, that is, the
+     * high surrogate of the character at the position has been returned.
+     */
+    private int half;
+
+    /**
+     * The end of the source.
+     */
+    private final int limit;
+
+    /**
+     * The start of the source.
+     */
+    private final int offset;
+
+    /**
+     * The current position in the source.
+     */
+    private int position;
+
+    /**
+     * The position and half before the last next(), for back().
+     */
+    private int previousHalf;
+    private int previousPosition;
+
+    /**
+     * The source, read as little-endian longs by the scans.
+     */
+    private final ByteBuffer words;
+
+
+    /**
+     * Construct a JSONByteTokener from UTF-8 bytes.
+     * @param bytes The source.
+     */
+    public JSONByteTokener(byte[] bytes) {
+        this(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Construct a JSONByteTokener from a range of UTF-8 bytes.
+     * @param bytes  The source.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     */
+    public JSONByteTokener(byte[] bytes, int offset, int length) {
+        super();
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.buffer = bytes;
+        this.offset = offset;
+        this.position = offset;
+        this.limit = offset + length;
+        this.words = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+
+    /**
+     * Construct a JSONByteTokener from the remaining UTF-8 bytes of a
+     * ByteBuffer. The position of the buffer is not changed.
+     * @param buffer The source.
+     */
+    public JSONByteTokener(ByteBuffer buffer) {
+        this(array(buffer), arrayOffset(buffer), buffer.remaining());
+    }
+
+
+    private static byte[] array(ByteBuffer buffer) {
+        if (buffer.hasArray()) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+
+    private static int arrayOffset(ByteBuffer buffer) {
+        return buffer.hasArray()
+            ? buffer.arrayOffset() + buffer.position()
+            : 0;
+    }
+
+
+    public void back() throws JSONException {
+        if (!this.canBack) {
+            throw new JSONException("Stepping back two steps is not supported");
+        }
+        this.position = this.previousPosition;
+        this.half = this.previousHalf;
+        this.canBack = false;
+        this.eof = false;
+    }
+
+
+    public boolean end() {
+        return this.eof;
+    }
+
+
+    public char next() throws JSONException {
+        this.previousPosition = this.position;
+        this.previousHalf = this.half;
+        this.canBack = true;
+        if (this.position >= this.limit) {
+            this.eof = true;
+            return 0;
+        }
+        int b = this.buffer[this.position];
+        if (b > 0) {
+            this.position += 1;
+            return (char)b;
+        }
+        if (b == 0) { // End of stream, as for a Reader
+            this.position += 1;
+            this.eof = true;
+            return 0;
+        }
+        return this.nextMultibyte(b & 0xff);
+    }
+
+
+    /**
+     * Decode a character that takes more than one byte. A malformed sequence
+     * is replaced with U+FFFD, as the UTF-8 decoder of an InputStreamReader
+     * does: a byte that cannot begin a sequence, an overlong form, a
+     * surrogate, or a code point above U+10FFFF is malformed, and so is the
+     * longest start of a sequence that is cut short, which is replaced as a
+     * whole.
+     */
+    private char nextMultibyte(int b) {
+        int length;
+        int c;
+        if (b >= 0xf0 && b <= 0xf4) {
+            length = 4;
+            c = b & 0x07;
+        } else if (b >= 0xe0 && b <= 0xef) {
+            length = 3;
+            c = b & 0x0f;
+        } else if (b >= 0xc2 && b <= 0xdf) {
+            length = 2;
+            c = b & 0x1f;
+        } else {
+            this.position += 1;
+            return '\uFFFD';
+        }
+        for (int i = 1; i < length; i += 1) {
+            if (this.position + i >= this.limit) {
+                this.position += i;
+                return '\uFFFD';
+            }
+            int b1 = this.buffer[this.position + i] & 0xff;
+            int low = 0x80;
+            int high = 0xbf;
+
+// The second byte rules out the overlong forms and those above U+10FFFF.
+
+            if (i == 1) {
+                if (b == 0xe0) {
+                    low = 0xa0;
+                } else if (b == 0xf0) {
+                    low = 0x90;
+                } else if (b == 0xf4) {
+                    high = 0x8f;
+                }
+            }
+            if (b1 < low || b1 > high) {
+                this.position += i;
+                return '\uFFFD';
+            }
+            c = (c << 6) | (b1 & 0x3f);
+        }
+        if (length < 4) {
+            this.position += length;
+            return c >= 0xd800 && c <= 0xdfff ? '\uFFFD' : (char)c;
+        }
+
+// A supplementary character is returned as two chars, like a Reader would.
+
+        if (this.half == 0) {
+            this.half = 1;
+            return (char)(((c - 0x10000) >> 10) + 0xd800);
+        }
+        this.half = 0;
+        this.position += length;
+        return (char)(((c - 0x10000) & 0x3ff) + 0xdc00);
+    }
+
+
+    public char nextClean() throws JSONException {
+        if (this.half == 0) {
+            byte[] buffer = this.buffer;
+            int limit = this.limit;
+            int i = this.position;
+            if (i < limit && buffer[i] > 0 && buffer[i] <= ' ') {
+                i = this.skipWhitespace(i + 1);
+            }
+            this.position = i;
+        }
+        return this.next();
+    }
+
+
+    /**
+     * Find the end of a run of whitespace, that is, of bytes from 1 to ' '.
+     * @return The index of the first byte that is not whitespace, or limit.
+     */
+    private int skipWhitespace(int i) {
+        int limit = this.limit;
+        while (i + 8 <= limit) {
+            long word = this.words.getLong(i);
+            long low = word & LOWS;
+            long stop = (word | (low + ABOVE_SPACE) | ~((low + LOWS) | word))
+                & HIGHS;
+            if (stop != 0) {
+                return i + (Long.numberOfTrailingZeros(stop) >>> 3);
+            }
+            i += 8;
+        }
+        byte[] buffer = this.buffer;
+        while (i < limit) {
+            byte b = buffer[i];
+            if (b <= 0 || b > ' ') {
+                break;
+            }
+            i += 1;
+        }
+        return i;
+    }
+
+
+    /**
+     * Find the end of the run of a string body that needs no processing.
+     * @return The index of the first quote, backslash, newline, return or
+     *  zero byte, or limit.
+     */
+    private int scanString(int i, char quote) {
+        int limit = this.limit;
+        // A quote above 0x7f never matches a byte, and 0 stops anyway.
+        long quotes = quote < 0x80 ? ONES * quote : 0;
+        while (i + 8 <= limit) {
+            long word = this.words.getLong(i);
+            long stop = zeros(word ^ quotes) | zeros(word ^ BACKSLASHES) |
+                zeros(word ^ NEWLINES) | zeros(word ^ RETURNS) | zeros(word);
+            if (stop != 0) {
+                return i + (Long.numberOfTrailingZeros(stop) >>> 3);
+            }
+            i += 8;
+        }
+        byte[] buffer = this.buffer;
+        while (i < limit) {
+            byte b = buffer[i];
+            if (b == quote || b == '\\' || b == '\n' || b == '\r' ||
+                    b == 0) {
+                break;
+            }
+            i += 1;
+        }
+        return i;
+    }
+
+
+    /**
+     * Set the high bit of each zero byte of a word, and no others.
+     */
+    private static long zeros(long word) {
+        return ~(((word & LOWS) + LOWS) | word) & HIGHS;
+    }
+
+
+    /**
+     * Get the next key of an object. A quoted key without escapes is looked
+     * up in the JSONKeyCache straight from the bytes, so a repeated key
+     * costs no allocation at all.
+     */
+    String nextKey() throws JSONException {
+        char c = this.nextClean();
+        if ((c == '"' || c == '\'') && this.half == 0) {
+            byte[] buffer = this.buffer;
+            int limit = this.limit;
+            int start = this.position;
+            int i = this.scanString(start, c);
+            if (i < limit && buffer[i] == c) {
+                this.previousPosition = i;
+                this.previousHalf = 0;
+                this.canBack = true;
+                this.position = i + 1;
+                return JSONKeyCache.intern(buffer, start, i - start);
+            }
+            return this.nextString(c);
+        }
+        this.back();
+        return this.nextValue().toString();
+    }
+
+
+    public String nextString(char quote) throws JSONException {
+        if (this.half != 0) {
+            return super.nextString(quote);
+        }
+
+        byte[] buffer = this.buffer;
+        int limit = this.limit;
+        int start = this.position;
+        int i = start;
+        StringBuilder sb = null;
+
+        for (;;) {
+
+// Find the end of the run of characters that need no processing.
+
+            i = this.scanString(i, quote);
+            byte b = i < limit ? buffer[i] : 0;
+            if (i >= limit || b == '\n' || b == '\r' || b == 0) {
+                this.position = i;
+                this.canBack = false;
+                throw this.syntaxError("Unterminated string");
+            }
+            if (b == quote) {
+                String run = new String(buffer, start, i - start, UTF8);
+                this.previousPosition = i;
+                this.previousHalf = 0;
+                this.canBack = true;
+                this.position = i + 1;
+                return sb == null ? run : sb.append(run).toString();
+            }
+
+// A backslash.
+
+            if (sb == null) {
+                sb = new StringBuilder(i - start + 16);
+            }
+            if (i > start) {
+                sb.append(new String(buffer, start, i - start, UTF8));
+            }
+            i += 1;
+            if (i >= limit) {
+                this.position = i;
+                this.canBack = false;
+                throw this.syntaxError("Unterminated string");
+            }
+            b = buffer[i];
+            i += 1;
+            switch (b) {
+            case 'b':
+                sb.append('\b');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 'u':
+                if (i + 4 > limit) {
+                    this.position = limit;
+                    this.canBack = false;
+                    throw this.syntaxError("Substring bounds error");
+                }
+                int c = 0;
+                for (int j = 0; j < 4; j += 1) {
+                    int h = dehexchar((char)buffer[i + j]);
+                    if (h < 0) {
+                        this.position = i;
+                        this.canBack = false;
+                        throw this.syntaxError("Illegal escape.");
+                    }
+                    c = (c << 4) | h;
+                }
+                sb.append((char)c);
+                i += 4;
+                break;
+            case '"':
+            case '\'':
+            case '\\':
+            case '/':
+                sb.append((char)b);
+                break;
+            default:
+                this.position = i;
+                this.canBack = false;
+                throw this.syntaxError("Illegal escape.");
+            }
+            start = i;
+        }
+    }
+
+
+    public Object nextValue() throws JSONException {
+        char c = this.nextClean();
+
+        switch (c) {
+            case '"':
+            case '\'':
+                return this.nextString(c);
+            case '{':
+                this.back();
+                return this.pool == null
+                    ? new JSONObject(this)
+                    : this.pool.object(this);
+            case '[':
+                this.back();
+                return this.pool == null
+                    ? new JSONArray(this)
+                    : this.pool.array(this);
+        }
+        this.back();
+        if (this.half != 0) {
+            return super.nextValue();
+        }
+
+/*
+ * Accumulate bytes until we reach the end of the text or a formatting
+ * character. Bytes of multibyte characters are all negative, and are never
+ * formatting characters.
+ */
+
+        byte[] buffer = this.buffer;
+        int limit = this.limit;
+        int start = this.position;
+        int i = start;
+        while (i < limit) {
+            byte b = buffer[i];
+            if (b >= 0 && (b < ' ' || DELIMITER[b])) {
+                break;
+            }
+            i += 1;
+        }
+        this.position = i;
+        this.canBack = false;
+
+// Small integers and the usual literals need no String.
+
+        int end = i;
+        while (end > start && buffer[end - 1] == ' ') {
+            end -= 1;
+        }
+        Object value = simpleValue(buffer, start, end);
+        if (value != null) {
+            return value;
+        }
+
+        String string = new String(buffer, start, i - start, UTF8).trim();
+        if ("".equals(string)) {
+            throw this.syntaxError("Missing value");
+        }
+        return JSONObject.stringToValue(string);
+    }
+
+
+    /**
+     * Get the value of an unquoted token that is an int of at most 9 digits,
+     * or true, false, or null in lower case, as stringToValue would.
+     * @return The value, or null if the token is something else.
+     */
+    private static Object simpleValue(byte[] buffer, int start, int end) {
+        int length = end - start;
+        if (length == 0) {
+            return null;
+        }
+        byte b = buffer[start];
+        if (b == 't' && length == 4 && buffer[start + 1] == 'r' &&
+                buffer[start + 2] == 'u' && buffer[start + 3] == 'e') {
+            return Boolean.TRUE;
+        }
+        if (b == 'f' && length == 5 && buffer[start + 1] == 'a' &&
+                buffer[start + 2] == 'l' && buffer[start + 3] == 's' &&
+                buffer[start + 4] == 'e') {
+            return Boolean.FALSE;
+        }
+        if (b == 'n' && length == 4 && buffer[start + 1] == 'u' &&
+                buffer[start + 2] == 'l' && buffer[start + 3] == 'l') {
+            return JSONObject.NULL;
+        }
+        int i = b == '-' ? start + 1 : start;
+        if (i == end || end - i > 9) {
+            return null;
+        }
+        int value = 0;
+        while (i < end) {
+            b = buffer[i];
+            if (b < '0' || b > '9') {
+                return null;
+            }
+            value = value * 10 + (b - '0');
+            i += 1;
+        }
+        return Integer.valueOf(buffer[start] == '-' ? -value : value);
+    }
+
+
+    public char skipTo(char to) throws JSONException {
+        int startPosition = this.position;
+        int startHalf = this.half;
+        char c;
+        do {
+            c = this.next();
+            if (c == 0) {
+                this.position = startPosition;
+                this.half = startHalf;
+                this.canBack = false;
+                this.eof = false;
+                return c;
+            }
+        } while (c != to);
+        this.back();
+        return c;
+    }
+
+
+    /**
+     * Make a printable string of this JSONByteTokener. The line and character
+     * are only counted here, when they are needed.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        long character = 1;
+        long line = 1;
+        byte previous = 0;
+        for (int i = this.offset; i < this.position; i += 1) {
+            byte b = this.buffer[i];
+            if (previous == '\r') {
+                line += 1;
+                character = b == '\n' ? 0 : 1;
+            } else if (b == '\n') {
+                line += 1;
+                character = 0;
+            } else if ((b & 0xc0) != 0x80) {
+                character += 1;
+            }
+            previous = b;
+        }
+        return " at " + (this.position - this.offset) + " [character " +
+            character + " line " + line + "]";
+    }
+}
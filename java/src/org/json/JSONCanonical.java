@@ -0,0 +1,344 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * This provides static methods to write a JSON value in a canonical form,
+ * and to compute a 64 bit hash of its structure. A JSONObject keeps its keys
+ * in no particular order, so two equal objects can be written differently;
+ * their canonical forms are the same.
+ * <p>
+ * In the canonical form there is no whitespace, the keys of each object are
+ * sorted by their UTF-16 code units, strings are quoted as JSONObject.quote
+ * does, and numbers are normalized by value: an integral number is written as
+ * an integer, whether it is an Integer, a Long, a Double or a BigDecimal and
+ * however large, so that <code>1</code>, <code>1.0</code> and
+ * <code>1E0</code> are all <code>1</code>. Any other number is written with
+ * the fewest digits that read back as the same double, laid out as
+ * JSONObject writes it except that an exponent form has no empty fraction:
+ * <code>0.5</code>, <code>1E-7</code>, <code>1.5E-7</code>. A Float is taken
+ * at the value of its decimal digits, as it would be written in JSON text.
+ * <p>
+ * The hash is computed straight from the tree, without writing anything or
+ * sorting any keys: the members of an object are combined in an order
+ * independent way. Values with the same canonical form have the same hash,
+ * so the hash serves as a key for deduplication and caching, and two values
+ * with different hashes are certainly different. The hash is stable: it does
+ * not depend on the JVM or on String.hashCode.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public final class JSONCanonical {
+
+    /**
+     * Distinguish the kinds of values in the hash.
+     */
+    private static final long NULL = 0x6e756c6cL;
+    private static final long FALSE = 0x66616c7365L;
+    private static final long TRUE = 0x74727565L;
+    private static final long INTEGER = 0x696e74L;
+    private static final long DOUBLE = 0x646f75626c65L;
+    private static final long STRING = 0x737472L;
+    private static final long ARRAY = 0x5bL;
+    private static final long OBJECT = 0x7bL;
+
+    /**
+     * The 64 bit golden ratio, an odd constant with well mixed bits.
+     */
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+    /**
+     * Doubles of at least this magnitude are not held exactly by a long.
+     */
+    private static final double LONG_LIMIT = 9.223372036854775807E18;
+
+
+    private JSONCanonical() {
+    }
+
+
+    /**
+     * Mix the bits of a long, as the finalizer of MurmurHash3 does, so that
+     * every bit of the result depends on every bit of the input.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+
+    /**
+     * Compute the hash of a value.
+     * @param value A Boolean, JSONArray, JSONObject, Number or String, the
+     *  JSONObject.NULL object or null, or an object to wrap.
+     * @return The 64 bit hash.
+     * @throws JSONException If the value is or contains a non-finite number,
+     *  or an object that can not be wrapped.
+     */
+    public static long hash(Object value) throws JSONException {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            return mix(NULL);
+        }
+        if (value instanceof String) {
+            return hash((String)value);
+        }
+        if (value instanceof JSONObject) {
+
+// Sum the hashes of the members, so that their order does not matter.
+
+            JSONObject jo = (JSONObject)value;
+            long sum = 0;
+            Iterator keys = jo.keys();
+            while (keys.hasNext()) {
+                String key = keys.next().toString();
+                sum += mix(hash(key) * GOLDEN + hash(jo.opt(key)));
+            }
+            return mix(OBJECT ^ sum ^ ((long)jo.length() << 8));
+        }
+        if (value instanceof JSONArray) {
+            JSONArray ja = (JSONArray)value;
+            long h = ARRAY;
+            int length = ja.length();
+            for (int i = 0; i < length; i += 1) {
+                h = mix(h * GOLDEN + hash(ja.opt(i)));
+            }
+            return mix(h ^ length);
+        }
+        if (value instanceof Boolean) {
+            return mix(((Boolean)value).booleanValue() ? TRUE : FALSE);
+        }
+        if (value instanceof Number) {
+            Object number = normalize((Number)value);
+            if (number instanceof Long) {
+                return mix(INTEGER * GOLDEN + ((Long)number).longValue());
+            }
+            if (number instanceof Double) {
+                return mix(DOUBLE * GOLDEN + Double.doubleToLongBits(
+                        ((Double)number).doubleValue()));
+            }
+            return mix(INTEGER ^ hash(number.toString()));
+        }
+        if (value instanceof Character) {
+            return hash(value.toString());
+        }
+        return hash(wrap(value));
+    }
+
+
+    /**
+     * Compute the hash of a string, four characters at a time.
+     */
+    private static long hash(String string) {
+        int length = string.length();
+        long h = STRING ^ ((long)length << 32);
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            long word = (long)string.charAt(i) |
+                    (long)string.charAt(i + 1) << 16 |
+                    (long)string.charAt(i + 2) << 32 |
+                    (long)string.charAt(i + 3) << 48;
+            h = (h ^ word) * GOLDEN;
+            h ^= h >>> 29;
+        }
+        for (; i < length; i += 1) {
+            h = (h ^ string.charAt(i)) * GOLDEN;
+            h ^= h >>> 29;
+        }
+        return mix(h);
+    }
+
+
+    /**
+     * Normalize a number by its value.
+     * @return A Long if the number is integral and fits, else a String of
+     *  its digits if it is integral, whatever its type, else a finite
+     *  Double.
+     */
+    private static Object normalize(Number number) throws JSONException {
+        if (number instanceof Integer || number instanceof Long ||
+                number instanceof Short || number instanceof Byte) {
+            return Long.valueOf(number.longValue());
+        }
+        if (number instanceof BigInteger) {
+            BigInteger bi = (BigInteger)number;
+            return bi.bitLength() < 64
+                ? (Object)Long.valueOf(bi.longValue())
+                : bi.toString();
+        }
+        double d;
+        if (number instanceof BigDecimal) {
+            BigDecimal bd = ((BigDecimal)number).stripTrailingZeros();
+            if (bd.scale() <= 0) {
+                return normalize(bd.toBigIntegerExact());
+            }
+            d = bd.doubleValue();
+        } else if (number instanceof Float) {
+            d = Double.parseDouble(number.toString());
+        } else {
+            d = number.doubleValue();
+        }
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+        if (d == Math.rint(d)) {
+            return Math.abs(d) < LONG_LIMIT
+                ? (Object)Long.valueOf((long)d)
+                : normalize(new BigDecimal(d).toBigIntegerExact());
+        }
+        return Double.valueOf(d);
+    }
+
+
+    /**
+     * Produce the canonical JSON text of a value.
+     * @param value A Boolean, JSONArray, JSONObject, Number or String, the
+     *  JSONObject.NULL object or null, or an object to wrap.
+     * @return The canonical text.
+     * @throws JSONException If the value is or contains a non-finite number,
+     *  or an object that can not be wrapped.
+     */
+    public static String toString(Object value) throws JSONException {
+        StringWriter sw = new StringWriter();
+        write(sw, value);
+        return sw.toString();
+    }
+
+
+    /**
+     * Produce the canonical text of a double that is not integral. It is
+     * written as JSONObject writes it, except that the mantissa of an
+     * exponent form drops an empty fraction: 1E-7, not 1.0E-7.
+     */
+    private static String numberToString(double d) {
+        String string = JSONDouble.toString(d);
+        int e = string.indexOf('E');
+        if (e > 2 && string.startsWith(".0", e - 2)) {
+            string = string.substring(0, e - 2) + string.substring(e);
+        }
+        return string;
+    }
+
+
+    /**
+     * Wrap a value that is not a JSON value, as JSONObject.wrap does.
+     */
+    private static Object wrap(Object value) throws JSONException {
+        if (value instanceof JSONString) {
+            String string;
+            try {
+                string = ((JSONString)value).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException(e);
+            }
+            return new JSONTokener(string).nextValue();
+        }
+        Object wrapped = JSONObject.wrap(value);
+        if (wrapped == null) {
+            throw new JSONException("Can not wrap " +
+                    value.getClass().getName());
+        }
+        return wrapped;
+    }
+
+
+    /**
+     * Write the canonical JSON text of a value.
+     * @param writer The writer.
+     * @param value A Boolean, JSONArray, JSONObject, Number or String, the
+     *  JSONObject.NULL object or null, or an object to wrap.
+     * @return The writer.
+     * @throws JSONException If the value is or contains a non-finite number,
+     *  or an object that can not be wrapped, or if the writer fails.
+     */
+    public static Writer write(Writer writer, Object value)
+            throws JSONException {
+        try {
+            if (value == null || JSONObject.NULL.equals(value)) {
+                writer.write("null");
+            } else if (value instanceof String) {
+                JSONObject.quote((String)value, writer);
+            } else if (value instanceof JSONObject) {
+                JSONObject jo = (JSONObject)value;
+                String[] keys = new String[jo.length()];
+                Iterator iterator = jo.keys();
+                int length = 0;
+                while (iterator.hasNext() && length < keys.length) {
+                    keys[length] = iterator.next().toString();
+                    length += 1;
+                }
+                Arrays.sort(keys, 0, length);
+                writer.write('{');
+                for (int i = 0; i < length; i += 1) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    JSONObject.quote(keys[i], writer);
+                    writer.write(':');
+                    write(writer, jo.opt(keys[i]));
+                }
+                writer.write('}');
+            } else if (value instanceof JSONArray) {
+                JSONArray ja = (JSONArray)value;
+                int length = ja.length();
+                writer.write('[');
+                for (int i = 0; i < length; i += 1) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    write(writer, ja.opt(i));
+                }
+                writer.write(']');
+            } else if (value instanceof Boolean) {
+                writer.write(value.toString());
+            } else if (value instanceof Number) {
+                Object number = normalize((Number)value);
+                if (number instanceof Double) {
+                    writer.write(numberToString(((Double)number).doubleValue()));
+                } else {
+                    writer.write(number.toString());
+                }
+            } else if (value instanceof Character) {
+                JSONObject.quote(value.toString(), writer);
+            } else {
+                write(writer, wrap(value));
+            }
+            return writer;
+        } catch (IOException exception) {
+            throw new JSONException(exception);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * JSONDouble formats doubles for JSON text with the fewest digits that read
+ * back as the same double, written straight into a char array. The layout is
+ * that of Double.toString, with trailing zeros and a trailing decimal point
+ * shaved off, as numberToString has always done: <code>123.45</code>,
+ * <code>100</code>, <code>0.001</code>, <code>1.5E10</code>.
+ * <p>
+ * The digits are found by scaling the double by increasing powers of ten
+ * until the scaled value rounds to an integer c with c / 10<sup>s</sup> equal
+ * to the double. While c is below 2<sup>53</sup> and 10<sup>s</sup> is at
+ * most 10<sup>22</sup>, both are exact and the division is correctly
+ * rounded, so the test is exact, and the first scale that passes gives the
+ * shortest digits. That covers prices, readings and the like, which have
+ * few digits.
+ * <p>
+ * The rest, which need 16 or 17 digits or are very large or small, start
+ * from the digits of Double.toString. Before Java 19 those are not always
+ * the shortest: 1.0E23 comes out as 9.999999999999999E22, and 2.0E23 as
+ * 1.9999999999999998E23. So they are rounded to one digit fewer, and to one
+ * fewer again, for as long as the result still reads back as the same
+ * double, which is checked as above, or with Double.parseDouble where that
+ * cannot be exact. The result has the fewest digits, but at least two, as
+ * Double.toString has since Java 19. Only the choice between two equally
+ * short decimals may still differ between versions of Java.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+final class JSONDouble {
+
+    /**
+     * The most characters a formatted double takes: a sign, "0.00", and 17
+     * digits, or a sign, 17 digits, a point and a 4 character exponent.
+     */
+    private static final int MAX_LENGTH = 26;
+
+    /**
+     * 2<sup>53</sup>: every long below it is exactly a double.
+     */
+    private static final double EXACT_LIMIT = 9007199254740992.0;
+
+    /**
+     * The powers of ten that fit in a long.
+     */
+    private static final long[] POWERS = new long[19];
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < POWERS.length; i += 1) {
+            POWERS[i] = POWERS[i - 1] * 10;
+        }
+    }
+
+
+    private JSONDouble() {
+    }
+
+
+    /**
+     * Format a finite double.
+     * @param d A finite double.
+     * @param chars A buffer of at least MAX_LENGTH characters.
+     * @return The number of characters.
+     */
+    private static int format(double d, char[] chars) {
+        int length = 0;
+        if (d < 0 || (d == 0 && 1 / d < 0)) {
+            chars[0] = '-';
+            length = 1;
+            d = -d;
+        }
+        if (d == 0) {
+            chars[length] = '0';
+            return length + 1;
+        }
+
+// Find the scale and the digits.
+
+        long digits = -1;
+        int scale = 0;
+        for (; scale < JSONObject.POWERS_OF_TEN.length; scale += 1) {
+            double power = JSONObject.POWERS_OF_TEN[scale];
+            double scaled = d * power;
+            if (scaled >= EXACT_LIMIT) {
+                break;
+            }
+            long c = Math.round(scaled);
+            if (c / power == d) {
+                digits = c;
+                break;
+            }
+
+// The product may have rounded c to the wrong side.
+
+            if (c > 0 && (c - 1) / power == d) {
+                digits = c - 1;
+                break;
+            }
+            if ((c + 1) / power == d) {
+                digits = c + 1;
+                break;
+            }
+        }
+        if (digits < 0) {
+            String string = Double.toString(d);
+            digits = parseDigits(string);
+            scale = parseScale(string);
+            int count = 1;
+            while (digits / POWERS[count] != 0) {
+                count += 1;
+            }
+
+// Round to fewer digits while the result reads back. If a shorter decimal
+// reads back at all, one of the two nearest to these digits does.
+
+            long shortest = digits;
+            int shortestScale = scale;
+            for (int cut = 1; count - cut >= 2; cut += 1) {
+                long power = POWERS[cut];
+                long down = digits / power;
+                long remainder = digits % power;
+                boolean nearer = 2 * remainder < power ||
+                    (2 * remainder == power && down % 2 == 0);
+                long first = nearer ? down : down + 1;
+                long second = nearer ? down + 1 : down;
+                if (reads(first, scale - cut, d)) {
+                    shortest = first;
+                } else if (reads(second, scale - cut, d)) {
+                    shortest = second;
+                } else {
+                    break;
+                }
+                shortestScale = scale - cut;
+            }
+            digits = shortest;
+            scale = shortestScale;
+            while (digits % 10 == 0) {
+                digits /= 10;
+                scale -= 1;
+            }
+        }
+
+// Put the digits at the end of the buffer, then lay them out.
+
+        int end = MAX_LENGTH;
+        int start = end;
+        while (digits != 0) {
+            start -= 1;
+            chars[start] = (char)('0' + (int)(digits % 10));
+            digits /= 10;
+        }
+        int count = end - start;
+        int exponent = count - scale - 1;
+
+        if (exponent >= -3 && exponent < 7) {
+            if (exponent < 0) {
+                chars[length] = '0';
+                chars[length + 1] = '.';
+                length += 2;
+                for (int i = -1; i > exponent; i -= 1) {
+                    chars[length] = '0';
+                    length += 1;
+                }
+                System.arraycopy(chars, start, chars, length, count);
+                return length + count;
+            }
+            int whole = exponent + 1;
+            if (whole >= count) {
+                System.arraycopy(chars, start, chars, length, count);
+                length += count;
+                for (int i = count; i < whole; i += 1) {
+                    chars[length] = '0';
+                    length += 1;
+                }
+                return length;
+            }
+            System.arraycopy(chars, start, chars, length, whole);
+            length += whole;
+            chars[length] = '.';
+            length += 1;
+            System.arraycopy(chars, start + whole, chars, length,
+                    count - whole);
+            return length + count - whole;
+        }
+
+// Computerized scientific notation, keeping at least one fraction digit.
+
+        while (chars[end - 1] == '0') {
+            end -= 1;
+            count -= 1;
+        }
+        chars[length] = chars[start];
+        chars[length + 1] = '.';
+        length += 2;
+        if (count == 1) {
+            chars[length] = '0';
+            length += 1;
+        } else {
+            System.arraycopy(chars, start + 1, chars, length, count - 1);
+            length += count - 1;
+        }
+        chars[length] = 'E';
+        length += 1;
+        if (exponent < 0) {
+            chars[length] = '-';
+            length += 1;
+            exponent = -exponent;
+        }
+        if (exponent >= 100) {
+            chars[length] = (char)('0' + exponent / 100);
+            length += 1;
+        }
+        if (exponent >= 10) {
+            chars[length] = (char)('0' + exponent / 10 % 10);
+            length += 1;
+        }
+        chars[length] = (char)('0' + exponent % 10);
+        return length + 1;
+    }
+
+
+    /**
+     * Get the significant digits of a string made by Double.toString, as a
+     * long with no leading zeros.
+     */
+    private static long parseDigits(String string) {
+        long digits = 0;
+        for (int i = 0; i < string.length(); i += 1) {
+            char c = string.charAt(i);
+            if (c == 'E') {
+                break;
+            }
+            if (c >= '0' && c <= '9') {
+                digits = digits * 10 + (c - '0');
+            }
+        }
+        return digits;
+    }
+
+
+    /**
+     * Get the scale of a string made by Double.toString, such that its value
+     * is its digits divided by 10 to the scale.
+     */
+    private static int parseScale(String string) {
+        int point = string.indexOf('.');
+        int e = string.indexOf('E');
+        int end = e < 0 ? string.length() : e;
+        int scale = end - point - 1;
+        if (e >= 0) {
+            scale -= Integer.parseInt(string.substring(e + 1));
+        }
+        return scale;
+    }
+
+
+    /**
+     * Determine if digits divided by 10 to a scale read back as a double.
+     * While the digits and the power of ten are exact doubles, one division
+     * or multiplication is correctly rounded, as reading would be.
+     */
+    private static boolean reads(long digits, int scale, double d) {
+        if (digits < EXACT_LIMIT) {
+            if (scale >= 0 && scale < JSONObject.POWERS_OF_TEN.length) {
+                return digits / JSONObject.POWERS_OF_TEN[scale] == d;
+            }
+            if (scale < 0 && -scale < JSONObject.POWERS_OF_TEN.length) {
+                return digits * JSONObject.POWERS_OF_TEN[-scale] == d;
+            }
+        }
+        return Double.parseDouble(digits + "E" + -scale) == d;
+    }
+
+
+    /**
+     * Produce a string from a finite double.
+     * @param d A finite double.
+     * @return The shortest string that reads back as d.
+     */
+    static String toString(double d) {
+        char[] chars = new char[MAX_LENGTH];
+        return new String(chars, 0, format(d, chars));
+    }
+
+
+    /**
+     * Write a finite double to a writer.
+     * @param writer The writer.
+     * @param d A finite double.
+     * @throws IOException
+     */
+    static void write(Writer writer, double d) throws IOException {
+        char[] chars = new char[MAX_LENGTH];
+        writer.write(chars, 0, format(d, chars));
+    }
+}
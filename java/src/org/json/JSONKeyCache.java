@@ -0,0 +1,134 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * The JSONKeyCache canonicalizes the keys of parsed objects. A stream of
+ * messages repeats the same few keys over and over, so instead of allocating
+ * a new String for each one, the tokeners look the raw characters or bytes up
+ * here and get back a shared String.
+ * <p>
+ * Each table is direct mapped and of a fixed size: a key that collides with
+ * another simply replaces it. Entries are immutable, so the tables are shared
+ * by all threads without locking; a race can only cause a miss.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+final class JSONKeyCache {
+
+    /**
+     * Keys longer than this are not cached.
+     */
+    static final int MAX_LENGTH = 32;
+
+    private static final int SIZE = 512;
+
+    /**
+     * A key, with the UTF-8 bytes it was decoded from.
+     */
+    private static final class Entry {
+        final byte[] bytes;
+        final String string;
+
+        Entry(byte[] bytes, String string) {
+            this.bytes = bytes;
+            this.string = string;
+        }
+    }
+
+    private static final Entry[] byteTable = new Entry[SIZE];
+
+    private static final String[] charTable = new String[SIZE];
+
+
+    private JSONKeyCache() {
+    }
+
+
+    /**
+     * Get the key for a range of UTF-8 bytes.
+     * @param bytes  The source.
+     * @param offset The index of the first byte of the key.
+     * @param length The number of bytes.
+     * @return The key.
+     */
+    static String intern(byte[] bytes, int offset, int length) {
+        if (length > MAX_LENGTH) {
+            return new String(bytes, offset, length, JSONByteTokener.UTF8);
+        }
+        int h = 0;
+        for (int i = 0; i < length; i += 1) {
+            h = 31 * h + bytes[offset + i];
+        }
+        int slot = (h ^ (h >>> 16)) & (SIZE - 1);
+        Entry entry = byteTable[slot];
+        if (entry != null && entry.bytes.length == length) {
+            byte[] b = entry.bytes;
+            int i = 0;
+            while (i < length && b[i] == bytes[offset + i]) {
+                i += 1;
+            }
+            if (i == length) {
+                return entry.string;
+            }
+        }
+        byte[] b = new byte[length];
+        System.arraycopy(bytes, offset, b, 0, length);
+        String string = new String(b, JSONByteTokener.UTF8);
+        byteTable[slot] = new Entry(b, string);
+        return string;
+    }
+
+
+    /**
+     * Get the key for a sequence of characters.
+     * @param chars The key.
+     * @return The key.
+     */
+    static String intern(CharSequence chars) {
+        int length = chars.length();
+        if (length > MAX_LENGTH) {
+            return chars.toString();
+        }
+        int h = 0;
+        for (int i = 0; i < length; i += 1) {
+            h = 31 * h + chars.charAt(i);
+        }
+        int slot = (h ^ (h >>> 16)) & (SIZE - 1);
+        String string = charTable[slot];
+        if (string != null && string.length() == length) {
+            int i = 0;
+            while (i < length && string.charAt(i) == chars.charAt(i)) {
+                i += 1;
+            }
+            if (i == length) {
+                return string;
+            }
+        }
+        string = chars.toString();
+        charTable[slot] = string;
+        return string;
+    }
+}
@@ -0,0 +1,352 @@
+package org.json;
+
+import java.util.Iterator;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONLazyObject is a JSONObject that does not parse its values until they
+ * are asked for. Construction only scans the UTF-8 source to record where
+ * each key's value starts and ends. A value is parsed the first time it is
+ * read with <code>get</code> or one of the <code>opt</code> methods, and is
+ * kept from then on. Values that are objects become JSONLazyObjects
+ * themselves, so only the path that is actually read is ever built.
+ * <p>
+ * Keys are known without parsing any values, so <code>has</code>,
+ * <code>keys</code> and <code>length</code> are cheap. When a JSONLazyObject
+ * is written, values that were never read are copied as they appear in the
+ * source, so the source should be standard JSON: the forgiving syntax of
+ * JSONTokener is not accepted here.
+ * <p>
+ * A malformed value is only found when it is read: <code>get</code> then
+ * throws, while <code>opt</code> and the methods built on it return null or
+ * their default, as they do for a missing key. Call <code>parseAll</code>
+ * to check every value at once.
+ * <p>
+ * Reading a value replaces it in the map, so values are parsed while holding
+ * the object's lock, and <code>get</code> and <code>opt</code> may be called
+ * from several threads at once. Other reads, such as <code>write</code> and
+ * <code>toString</code>, do not take the lock and must not overlap them;
+ * after <code>parseAll</code> the object can be read freely, like any
+ * JSONObject that is no longer changed.
+ * <p>
+ * The source bytes are shared, not copied, and must not be changed while the
+ * object is in use.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public class JSONLazyObject extends JSONObject {
+
+    /**
+     * A value that has not been parsed yet. It is stored in the map in place
+     * of the value.
+     */
+    private static final class Raw implements JSONString {
+        private final byte[] bytes;
+        private final int start;
+        private final int end;
+
+        Raw(byte[] bytes, int start, int end) {
+            this.bytes = bytes;
+            this.start = start;
+            this.end = end;
+        }
+
+        Object parse() throws JSONException {
+            if (this.bytes[this.start] == '{') {
+                return new JSONLazyObject(this.bytes, this.start,
+                        this.end - this.start);
+            }
+            return new JSONByteTokener(this.bytes, this.start,
+                    this.end - this.start).nextValue();
+        }
+
+        public String toJSONString() {
+            return new String(this.bytes, this.start, this.end - this.start,
+                    JSONByteTokener.UTF8);
+        }
+    }
+
+
+    /**
+     * Construct a JSONLazyObject from UTF-8 bytes.
+     * @param bytes The source, beginning with <code>{</code>.
+     * @throws JSONException If the source is not a well formed object, or
+     *  has a duplicated key.
+     */
+    public JSONLazyObject(byte[] bytes) throws JSONException {
+        this(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Construct a JSONLazyObject from a range of UTF-8 bytes.
+     * @param bytes  The source.
+     * @param offset The index of the first byte of the object.
+     * @param length The number of bytes.
+     * @throws JSONException If the source is not a well formed object, or
+     *  has a duplicated key.
+     */
+    public JSONLazyObject(byte[] bytes, int offset, int length)
+            throws JSONException {
+        super();
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        this.index(bytes, offset, offset + length);
+    }
+
+
+    /**
+     * Construct a JSONLazyObject from a source JSON text string.
+     * @param source A string beginning with <code>{</code>.
+     * @throws JSONException If the source is not a well formed object, or
+     *  has a duplicated key.
+     */
+    public JSONLazyObject(String source) throws JSONException {
+        this(source.getBytes(JSONByteTokener.UTF8));
+    }
+
+
+    /**
+     * Get the value object associated with a key, parsing it if needed.
+     *
+     * @param key   A key string.
+     * @return      The object associated with the key.
+     * @throws      JSONException if the key is not found or the value is
+     *  malformed.
+     */
+    public Object get(String key) throws JSONException {
+        this.parse(key);
+        return super.get(key);
+    }
+
+
+    /**
+     * Get an optional value associated with a key, parsing it if needed.
+     * @param key   A key string.
+     * @return      An object which is the value, or null if there is no value
+     *  or it is malformed. Use <code>get</code> to see why a value is
+     *  malformed.
+     */
+    public Object opt(String key) {
+        try {
+            this.parse(key);
+        } catch (JSONException e) {
+            return null;
+        }
+        return super.opt(key);
+    }
+
+
+    /**
+     * Remove a name and its value, if present.
+     * @param key The name to be removed.
+     * @return The value that was associated with the name,
+     * or null if there was no value.
+     */
+    public Object remove(String key) {
+        Object value = this.opt(key);
+        super.remove(key);
+        return value;
+    }
+
+
+    /**
+     * Parse every value that has not been read yet. Afterwards the object
+     * behaves exactly like a JSONObject.
+     * @return this.
+     * @throws JSONException If a value is malformed.
+     */
+    public JSONLazyObject parseAll() throws JSONException {
+        Iterator keys = this.keys();
+        while (keys.hasNext()) {
+            this.parse((String)keys.next());
+        }
+        return this;
+    }
+
+
+    /**
+     * Replace the Raw value of a key with the parsed value.
+     */
+    private synchronized void parse(String key) throws JSONException {
+        Object value = super.opt(key);
+        if (value instanceof Raw) {
+            super.put(key, ((Raw)value).parse());
+        }
+    }
+
+
+    static JSONException syntaxError(String message, int position,
+            int offset) {
+        return new JSONException(message + " at " + (position - offset));
+    }
+
+
+    /**
+     * Record the keys of the object in the source and where their values are.
+     */
+    private void index(byte[] bytes, int offset, int limit)
+            throws JSONException {
+        int i = skipWhitespace(bytes, offset, limit);
+        if (i >= limit || bytes[i] != '{') {
+            throw syntaxError("A JSONObject text must begin with '{'", i,
+                    offset);
+        }
+        i = skipWhitespace(bytes, i + 1, limit);
+        if (i < limit && bytes[i] == '}') {
+            return;
+        }
+        for (;;) {
+            if (i >= limit || bytes[i] != '"') {
+                throw syntaxError("Expected a quoted key", i, offset);
+            }
+            int keyStart = i + 1;
+            i = skipString(bytes, i, limit, offset);
+            String key = null;
+            for (int j = keyStart; j < i - 1; j += 1) {
+                if (bytes[j] == '\\') {
+                    key = new JSONByteTokener(bytes, keyStart, i - keyStart)
+                        .nextString('"');
+                    break;
+                }
+            }
+            if (key == null) {
+                key = JSONKeyCache.intern(bytes, keyStart, i - 1 - keyStart);
+            }
+
+            i = skipWhitespace(bytes, i, limit);
+            if (i >= limit || bytes[i] != ':') {
+                throw syntaxError("Expected a ':' after a key", i, offset);
+            }
+            i = skipWhitespace(bytes, i + 1, limit);
+            int valueStart = i;
+            i = skipValue(bytes, i, limit, offset);
+            this.putOnce(key, new Raw(bytes, valueStart, i));
+
+            i = skipWhitespace(bytes, i, limit);
+            if (i >= limit) {
+                throw syntaxError("A JSONObject text must end with '}'", i,
+                        offset);
+            }
+            if (bytes[i] == '}') {
+                return;
+            }
+            if (bytes[i] != ',') {
+                throw syntaxError("Expected a ',' or '}'", i, offset);
+            }
+            i = skipWhitespace(bytes, i + 1, limit);
+        }
+    }
+
+
+    static int skipWhitespace(byte[] bytes, int i, int limit) {
+        while (i < limit && bytes[i] >= 0 && bytes[i] <= ' ') {
+            i += 1;
+        }
+        return i;
+    }
+
+
+    /**
+     * Skip a quoted string.
+     * @return The index after the close quote.
+     */
+    static int skipString(byte[] bytes, int i, int limit, int offset)
+            throws JSONException {
+        byte quote = bytes[i];
+        i += 1;
+        while (i < limit) {
+            byte b = bytes[i];
+            if (b == quote) {
+                return i + 1;
+            }
+            if (b == '\\') {
+                i += 1;
+            } else if (b == '\n' || b == '\r') {
+                break;
+            }
+            i += 1;
+        }
+        throw syntaxError("Unterminated string", i, offset);
+    }
+
+
+    /**
+     * Skip a value, matching brackets but not looking inside scalars.
+     * @return The index after the value.
+     */
+    static int skipValue(byte[] bytes, int i, int limit, int offset)
+            throws JSONException {
+        int depth = 0;
+        int start = i;
+        while (i < limit) {
+            byte b = bytes[i];
+            switch (b) {
+            case '"':
+                i = skipString(bytes, i, limit, offset);
+                if (depth == 0) {
+                    return i;
+                }
+                continue;
+            case '{':
+            case '[':
+                depth += 1;
+                break;
+            case '}':
+            case ']':
+                if (depth == 0) {
+                    if (i == start) {
+                        throw syntaxError("Missing value", i, offset);
+                    }
+                    return i;
+                }
+                depth -= 1;
+                if (depth == 0) {
+                    return i + 1;
+                }
+                break;
+            case ',':
+                if (depth == 0) {
+                    if (i == start) {
+                        throw syntaxError("Missing value", i, offset);
+                    }
+                    return i;
+                }
+                break;
+            default:
+                if (depth == 0 && b >= 0 && b <= ' ') {
+                    return i;
+                }
+            }
+            i += 1;
+        }
+        if (depth != 0 || i == start) {
+            throw syntaxError("Unterminated value", i, offset);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,296 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONList is the list that holds the values of a JSONArray. An array
+ * whose values are all integers is kept in a long[], and one whose values
+ * are all Doubles in a double[], at 8 bytes per value instead of a pointer to
+ * a box. The first value of another kind moves the list to an Object[] for
+ * good.
+ * <p>
+ * Values are boxed again when they are read, with the types they were put
+ * with: an int-sized value in a long[] is always an Integer, so a Long is
+ * kept in a long[] only if it does not fit in an int.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+final class JSONList {
+
+    /**
+     * The values, if they are all Doubles.
+     */
+    private double[] doubles;
+
+    /**
+     * The values, if they are all Integers, or Longs that are not int-sized.
+     */
+    private long[] longs;
+
+    /**
+     * The values, if they are of mixed kinds. Exactly one of the arrays is
+     * not null, except that all are null until the first value is added.
+     */
+    private Object[] objects;
+
+    /**
+     * The number of values.
+     */
+    private int size;
+
+
+    void add(Object value) {
+        if (this.size == 0) {
+            if (isLong(value)) {
+                if (this.longs == null) {
+                    this.longs = new long[8];
+                    this.doubles = null;
+                    this.objects = null;
+                }
+            } else if (value instanceof Double) {
+                if (this.doubles == null) {
+                    this.doubles = new double[8];
+                    this.longs = null;
+                    this.objects = null;
+                }
+            } else if (this.objects == null) {
+                this.objects = new Object[8];
+                this.longs = null;
+                this.doubles = null;
+            }
+        }
+        if (this.objects == null) {
+            if (this.longs != null && isLong(value)) {
+                this.addLong(((Number)value).longValue());
+                return;
+            }
+            if (this.doubles != null && value instanceof Double) {
+                this.addDouble(((Double)value).doubleValue());
+                return;
+            }
+            this.inflate();
+        }
+        if (this.size == this.objects.length) {
+            Object[] newObjects = new Object[this.size * 2];
+            System.arraycopy(this.objects, 0, newObjects, 0, this.size);
+            this.objects = newObjects;
+        }
+        this.objects[this.size] = value;
+        this.size += 1;
+    }
+
+
+    /**
+     * Add a double, without boxing it if the list is all Doubles.
+     */
+    void addDouble(double value) {
+        if (this.doubles == null) {
+            this.add(Double.valueOf(value));
+            return;
+        }
+        if (this.size == this.doubles.length) {
+            double[] newDoubles = new double[this.size * 2];
+            System.arraycopy(this.doubles, 0, newDoubles, 0, this.size);
+            this.doubles = newDoubles;
+        }
+        this.doubles[this.size] = value;
+        this.size += 1;
+    }
+
+
+    /**
+     * Add an int, without boxing it if the list is all integers.
+     */
+    void addInt(int value) {
+        if (this.longs == null) {
+            this.add(Integer.valueOf(value));
+            return;
+        }
+        this.addLong(value);
+    }
+
+
+    private void addLong(long value) {
+        if (this.size == this.longs.length) {
+            long[] newLongs = new long[this.size * 2];
+            System.arraycopy(this.longs, 0, newLongs, 0, this.size);
+            this.longs = newLongs;
+        }
+        this.longs[this.size] = value;
+        this.size += 1;
+    }
+
+
+    /**
+     * Remove all of the values, keeping the arrays for reuse.
+     */
+    void clear() {
+        if (this.objects != null) {
+            for (int i = 0; i < this.size; i += 1) {
+                this.objects[i] = null;
+            }
+        }
+        this.size = 0;
+    }
+
+
+    Object get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        if (this.longs != null) {
+            long value = this.longs[index];
+            if (value == (int)value) {
+                return Integer.valueOf((int)value);
+            }
+            return Long.valueOf(value);
+        }
+        if (this.doubles != null) {
+            return Double.valueOf(this.doubles[index]);
+        }
+        return this.objects[index];
+    }
+
+
+    /**
+     * Move the values to an Object[].
+     */
+    private void inflate() {
+        Object[] newObjects = new Object[Math.max(this.size * 2, 8)];
+        for (int i = 0; i < this.size; i += 1) {
+            newObjects[i] = this.get(i);
+        }
+        this.objects = newObjects;
+        this.longs = null;
+        this.doubles = null;
+    }
+
+
+    /**
+     * Whether a value can be kept in a long[] and read back unchanged.
+     */
+    private static boolean isLong(Object value) {
+        if (value instanceof Integer) {
+            return true;
+        }
+        if (value instanceof Long) {
+            long l = ((Long)value).longValue();
+            return l != (int)l;
+        }
+        return false;
+    }
+
+
+    void remove(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        int moved = this.size - index - 1;
+        if (this.longs != null) {
+            System.arraycopy(this.longs, index + 1, this.longs, index, moved);
+        } else if (this.doubles != null) {
+            System.arraycopy(this.doubles, index + 1, this.doubles, index,
+                    moved);
+        } else {
+            System.arraycopy(this.objects, index + 1, this.objects, index,
+                    moved);
+            this.objects[this.size - 1] = null;
+        }
+        this.size -= 1;
+    }
+
+
+    void set(int index, Object value) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+        if (this.longs != null && isLong(value)) {
+            this.longs[index] = ((Number)value).longValue();
+            return;
+        }
+        if (this.doubles != null && value instanceof Double) {
+            this.doubles[index] = ((Double)value).doubleValue();
+            return;
+        }
+        if (this.objects == null) {
+            this.inflate();
+        }
+        this.objects[index] = value;
+    }
+
+
+    int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Copy the values to a double[], if they are all numbers.
+     * @return The values, or null if one of them is not a Number.
+     */
+    double[] toDoubleArray() {
+        double[] array = new double[this.size];
+        if (this.doubles != null) {
+            System.arraycopy(this.doubles, 0, array, 0, this.size);
+        } else if (this.longs != null) {
+            for (int i = 0; i < this.size; i += 1) {
+                array[i] = this.longs[i];
+            }
+        } else {
+            for (int i = 0; i < this.size; i += 1) {
+                if (!(this.objects[i] instanceof Number)) {
+                    return null;
+                }
+                array[i] = ((Number)this.objects[i]).doubleValue();
+            }
+        }
+        return array;
+    }
+
+
+    /**
+     * Copy the values to a long[], if they are all numbers. Doubles are
+     * truncated, as Number.longValue does.
+     * @return The values, or null if one of them is not a Number.
+     */
+    long[] toLongArray() {
+        long[] array = new long[this.size];
+        if (this.longs != null) {
+            System.arraycopy(this.longs, 0, array, 0, this.size);
+        } else if (this.doubles != null) {
+            for (int i = 0; i < this.size; i += 1) {
+                array[i] = (long)this.doubles[i];
+            }
+        } else {
+            for (int i = 0; i < this.size; i += 1) {
+                if (!(this.objects[i] instanceof Number)) {
+                    return null;
+                }
+                array[i] = ((Number)this.objects[i]).longValue();
+            }
+        }
+        return array;
+    }
+}
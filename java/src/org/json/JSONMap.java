@@ -0,0 +1,306 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A JSONMap is the compact map that holds the properties of a JSONObject.
+ * Keys and values are kept in two parallel arrays, in insertion order, so
+ * there is no entry object per property. Small maps, which are the common
+ * case, are searched linearly. Once a map grows past
+ * <code>LINEAR_LIMIT</code> keys, an open addressing table of positions in
+ * the arrays is added to keep lookups constant time.
+ * <p>
+ * Removing a key only empties its position, so removal takes constant time
+ * and keeps the order of the other keys. The empty positions are packed
+ * away when the arrays are next full.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+final class JSONMap {
+
+    /**
+     * The largest number of keys that are searched linearly.
+     */
+    static final int LINEAR_LIMIT = 8;
+
+    /**
+     * For each slot of the table, 1 + the position of its key, or 0 if the
+     * slot is empty. null while the map is small.
+     */
+    private int[] index;
+
+    /**
+     * The keys, in insertion order, with null at the positions of removed
+     * keys. null while the map is empty.
+     */
+    private Object[] keys;
+
+    /**
+     * The number of keys.
+     */
+    private int size;
+
+    /**
+     * The number of positions in use, including those of removed keys.
+     */
+    private int used;
+
+    /**
+     * The values, parallel to the keys.
+     */
+    private Object[] values;
+
+
+    /**
+     * Remove all of the keys, keeping the arrays for reuse.
+     */
+    void clear() {
+        for (int i = 0; i < this.used; i += 1) {
+            this.keys[i] = null;
+            this.values[i] = null;
+        }
+        this.size = 0;
+        this.used = 0;
+        this.index = null;
+    }
+
+
+    boolean containsKey(Object key) {
+        return this.find(key) >= 0;
+    }
+
+
+    Object get(Object key) {
+        int i = this.find(key);
+        return i >= 0 ? this.values[i] : null;
+    }
+
+
+    /**
+     * Get an iterator of the keys, in insertion order. The iterator supports
+     * remove.
+     */
+    Iterator keys() {
+        return new Iterator() {
+            private int last = -1;
+            private int next = 0;
+
+            public boolean hasNext() {
+                while (this.next < JSONMap.this.used &&
+                        JSONMap.this.keys[this.next] == null) {
+                    this.next += 1;
+                }
+                return this.next < JSONMap.this.used;
+            }
+
+            public Object next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.last = this.next;
+                this.next += 1;
+                return JSONMap.this.keys[this.last];
+            }
+
+            public void remove() {
+                if (this.last < 0) {
+                    throw new IllegalStateException();
+                }
+                JSONMap.this.removeAt(this.last);
+                this.last = -1;
+            }
+        };
+    }
+
+
+    Object put(Object key, Object value) {
+        int i = this.find(key);
+        if (i >= 0) {
+            Object old = this.values[i];
+            this.values[i] = value;
+            return old;
+        }
+        if (this.keys == null) {
+            this.keys = new Object[4];
+            this.values = new Object[4];
+        } else if (this.used == this.keys.length) {
+
+// Grow, unless packing away the removed keys frees a quarter of the arrays.
+
+            if (this.size * 4 > this.used * 3) {
+                Object[] newKeys = new Object[this.used * 2];
+                Object[] newValues = new Object[this.used * 2];
+                System.arraycopy(this.keys, 0, newKeys, 0, this.used);
+                System.arraycopy(this.values, 0, newValues, 0, this.used);
+                this.keys = newKeys;
+                this.values = newValues;
+            }
+            if (this.size < this.used) {
+                this.pack();
+            }
+        }
+        this.keys[this.used] = key;
+        this.values[this.used] = value;
+        this.used += 1;
+        this.size += 1;
+        if (this.used > LINEAR_LIMIT) {
+            if (this.index == null || this.used * 2 > this.index.length) {
+                this.rehash();
+            } else {
+                this.insert(this.used - 1);
+            }
+        }
+        return null;
+    }
+
+
+    Object remove(Object key) {
+        int i = this.find(key);
+        if (i < 0) {
+            return null;
+        }
+        Object old = this.values[i];
+        this.removeAt(i);
+        return old;
+    }
+
+
+    int size() {
+        return this.size;
+    }
+
+
+    /**
+     * Find the position of a key, or -1.
+     */
+    private int find(Object key) {
+        if (key == null) {
+            return -1;
+        }
+        if (this.index == null) {
+            for (int i = 0; i < this.used; i += 1) {
+                Object k = this.keys[i];
+                if (k == key || (k != null && k.equals(key))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        int mask = this.index.length - 1;
+        int slot = hash(key) & mask;
+        for (;;) {
+            int i = this.index[slot] - 1;
+            if (i < 0) {
+                return -1;
+            }
+            Object k = this.keys[i];
+            if (k == key || (k != null && k.equals(key))) {
+                return i;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+
+    /**
+     * Add the key at a position to the table.
+     */
+    private void insert(int i) {
+        int mask = this.index.length - 1;
+        int slot = hash(this.keys[i]) & mask;
+        while (this.index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        this.index[slot] = i + 1;
+    }
+
+
+    /**
+     * Move the keys down over the positions of removed keys, keeping their
+     * order, and rebuild the table.
+     */
+    private void pack() {
+        int j = 0;
+        for (int i = 0; i < this.used; i += 1) {
+            if (this.keys[i] != null) {
+                this.keys[j] = this.keys[i];
+                this.values[j] = this.values[i];
+                j += 1;
+            }
+        }
+        for (int i = j; i < this.used; i += 1) {
+            this.keys[i] = null;
+            this.values[i] = null;
+        }
+        this.used = j;
+        this.rehash();
+    }
+
+
+    /**
+     * Rebuild the table for the positions in use, or drop it if the map is
+     * small again.
+     */
+    private void rehash() {
+        if (this.used <= LINEAR_LIMIT) {
+            this.index = null;
+            return;
+        }
+        int length = 16;
+        while (length < this.used * 2) {
+            length *= 2;
+        }
+        this.index = new int[length];
+        for (int i = 0; i < this.used; i += 1) {
+            if (this.keys[i] != null) {
+                this.insert(i);
+            }
+        }
+    }
+
+
+    /**
+     * Remove the key at a position, leaving the position empty. The table
+     * keeps its slot, so that the keys after it in a run are still found.
+     */
+    private void removeAt(int i) {
+        this.keys[i] = null;
+        this.values[i] = null;
+        this.size -= 1;
+        if (this.size == 0) {
+            this.used = 0;
+            this.index = null;
+        }
+    }
+}
@@ -25,6 +25,7 @@ SOFTWARE.
 */
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.Field;
@@ -32,7 +33,6 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
@@ -133,7 +133,7 @@ public class JSONObject {
     /**
      * The map where the JSONObject's properties are kept.
      */
-    private final Map map;
+    private final JSONMap map;
 
 
     /**
@@ -149,7 +149,7 @@ public class JSONObject {
      * Construct an empty JSONObject.
      */
     public JSONObject() {
-        this.map = new HashMap();
+        this.map = new JSONMap();
     }
 
 
@@ -181,9 +181,26 @@ public class JSONObject {
      */
     public JSONObject(JSONTokener x) throws JSONException {
         this();
+        this.parse(x);
+    }
+
+
+    /**
+     * Read the properties of an object from a JSONTokener into this
+     * JSONObject, which is empty.
+     * @param x A JSONTokener object containing the source string.
+     * @throws JSONException If there is a syntax error in the source string
+     *  or a duplicated key.
+     */
+    void parse(JSONTokener x) throws JSONException {
         char c;
         String key;
 
+        if (x.maxDepth > 0) {
+            JSONParser.parse(x, this);
+            return;
+        }
+
         if (x.nextClean() != '{') {
             throw x.syntaxError("A JSONObject text must begin with '{'");
         }
@@ -196,7 +213,7 @@ public class JSONObject {
                 return;
             default:
                 x.back();
-                key = x.nextValue().toString();
+                key = x.nextKey();
             }
 
 // The key is followed by ':'. We will also tolerate '=' or '=>'.
@@ -238,7 +255,7 @@ public class JSONObject {
      * @throws JSONException
      */
     public JSONObject(Map map) {
-        this.map = new HashMap();
+        this.map = new JSONMap();
         if (map != null) {
             Iterator i = map.entrySet().iterator();
             while (i.hasNext()) {
@@ -427,19 +444,7 @@ public class JSONObject {
             return "null";
         }
 
-// Shave off trailing zeros and decimal point, if possible.
-
-        String string = Double.toString(d);
-        if (string.indexOf('.') > 0 && string.indexOf('e') < 0 &&
-                string.indexOf('E') < 0) {
-            while (string.endsWith("0")) {
-                string = string.substring(0, string.length() - 1);
-            }
-            if (string.endsWith(".")) {
-                string = string.substring(0, string.length() - 1);
-            }
-        }
-        return string;
+        return JSONDouble.toString(d);
     }
 
 
@@ -646,6 +651,14 @@ public class JSONObject {
     }
 
 
+    /**
+     * Remove all of the properties, keeping the storage for reuse.
+     */
+    void clear() {
+        this.map.clear();
+    }
+
+
     /**
      * Determine if the JSONObject contains a specific key.
      * @param key   A key string.
@@ -702,7 +715,7 @@ public class JSONObject {
      * @return An iterator of the keys.
      */
     public Iterator keys() {
-        return this.map.keySet().iterator();
+        return this.map.keys();
     }
 
 
@@ -743,6 +756,9 @@ public class JSONObject {
             throw new JSONException("Null pointer");
         }
         testValidity(number);
+        if (number instanceof Double) {
+            return JSONDouble.toString(number.doubleValue());
+        }
 
 // Shave off trailing zeros and decimal point, if possible.
 
@@ -956,50 +972,7 @@ public class JSONObject {
 
 
     private void populateMap(Object bean) {
-        Class klass = bean.getClass();
-
-// If klass is a System class then set includeSuperClass to false.
-
-        boolean includeSuperClass = klass.getClassLoader() != null;
-
-        Method[] methods = includeSuperClass
-                ? klass.getMethods()
-                : klass.getDeclaredMethods();
-        for (int i = 0; i < methods.length; i += 1) {
-            try {
-                Method method = methods[i];
-                if (Modifier.isPublic(method.getModifiers())) {
-                    String name = method.getName();
-                    String key = "";
-                    if (name.startsWith("get")) {
-                        if ("getClass".equals(name) ||
-                                "getDeclaringClass".equals(name)) {
-                            key = "";
-                        } else {
-                            key = name.substring(3);
-                        }
-                    } else if (name.startsWith("is")) {
-                        key = name.substring(2);
-                    }
-                    if (key.length() > 0 &&
-                            Character.isUpperCase(key.charAt(0)) &&
-                            method.getParameterTypes().length == 0) {
-                        if (key.length() == 1) {
-                            key = key.toLowerCase();
-                        } else if (!Character.isUpperCase(key.charAt(1))) {
-                            key = key.substring(0, 1).toLowerCase() +
-                                key.substring(1);
-                        }
-
-                        Object result = method.invoke(bean, (Object[])null);
-                        if (result != null) {
-                            this.map.put(key, wrap(result));
-                        }
-                    }
-                }
-            } catch (Exception ignore) {
-            }
-        }
+        JSONBinding.forClass(bean.getClass()).populate(bean, this.map);
     }
 
 
@@ -1150,6 +1123,56 @@ public class JSONObject {
     }
 
 
+    /**
+     * For each character below 0x80, how quote writes it: 0 if as itself,
+     * 'u' if as a \\u escape, or else the character to write after a
+     * backslash. '/' is only escaped after '<'.
+     */
+    private static final char[] ESCAPES = new char[128];
+    static {
+        for (int c = 0; c < ' '; c += 1) {
+            ESCAPES[c] = 'u';
+        }
+        ESCAPES['\b'] = 'b';
+        ESCAPES['\t'] = 't';
+        ESCAPES['\n'] = 'n';
+        ESCAPES['\f'] = 'f';
+        ESCAPES['\r'] = 'r';
+        ESCAPES['"'] = '"';
+        ESCAPES['\\'] = '\\';
+        ESCAPES['/'] = '/';
+    }
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+
+    /**
+     * Find the next character that quote must escape.
+     * @param string A String.
+     * @param i The index to start at.
+     * @return The index of the character, or the length of the string.
+     */
+    private static int escapeIndex(String string, int i) {
+        int length = string.length();
+        for (; i < length; i += 1) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+
+// The ASCII fast path.
+
+                char escape = ESCAPES[c];
+                if (escape != 0 && (escape != '/' ||
+                        (i > 0 && string.charAt(i - 1) == '<'))) {
+                    return i;
+                }
+            } else if (c < '\u00a0' || (c >= '\u2000' && c < '\u2100')) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+
     /**
      * Produce a string in double quotes with backslash sequences in all the
      * right places. A backslash will be inserted within </, producing <\/,
@@ -1159,69 +1182,67 @@ public class JSONObject {
      * @return  A String correctly formatted for insertion in a JSON text.
      */
     public static String quote(String string) {
-        StringWriter sw = new StringWriter();
-        synchronized (sw.getBuffer()) {
-            try {
-                return quote(string, sw).toString();
-            } catch (IOException ignored) {
-                // will never happen - we are writing to a string writer
-                return "";
-            }
+        if (string == null || string.length() == 0) {
+            return "\"\"";
+        }
+        int length = string.length();
+        if (escapeIndex(string, 0) == length) {
+            return new StringBuilder(length + 2).append('"').append(string)
+                .append('"').toString();
+        }
+        StringWriter sw = new StringWriter(length + 16);
+        try {
+            return quote(string, sw).toString();
+        } catch (IOException ignored) {
+            // will never happen - we are writing to a string writer
+            return "";
         }
     }
 
+    /**
+     * Write a string in double quotes with backslash sequences in all the
+     * right places, as <code>quote(String)</code> does. Runs of characters
+     * that need no escape are written with a single call.
+     * @param string A String
+     * @param w The writer.
+     * @return The writer.
+     * @throws IOException
+     */
     public static Writer quote(String string, Writer w) throws IOException {
         if (string == null || string.length() == 0) {
             w.write("\"\"");
             return w;
         }
 
-        char b;
-        char c = 0;
-        String hhhh;
-        int i;
-        int len = string.length();
+        char[] hhhh = null;
+        int length = string.length();
+        int start = 0;
 
         w.write('"');
-        for (i = 0; i < len; i += 1) {
-            b = c;
-            c = string.charAt(i);
-            switch (c) {
-            case '\\':
-            case '"':
-                w.write('\\');
-                w.write(c);
-                break;
-            case '/':
-                if (b == '<') {
-                    w.write('\\');
-                }
-                w.write(c);
-                break;
-            case '\b':
-                w.write("\\b");
-                break;
-            case '\t':
-                w.write("\\t");
-                break;
-            case '\n':
-                w.write("\\n");
-                break;
-            case '\f':
-                w.write("\\f");
-                break;
-            case '\r':
-                w.write("\\r");
+        for (;;) {
+            int i = escapeIndex(string, start);
+            if (i > start) {
+                w.write(string, start, i - start);
+            }
+            if (i == length) {
                 break;
-            default:
-                if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
-                        || (c >= '\u2000' && c < '\u2100')) {
-                    hhhh = "000" + Integer.toHexString(c);
-                    w.write("\\u" + hhhh.substring(hhhh.length() - 4));
-                } else {
-                    w.write(c);
+            }
+            char c = string.charAt(i);
+            char escape = c < 0x80 ? ESCAPES[c] : 'u';
+            if (escape == 'u') {
+                if (hhhh == null) {
+                    hhhh = new char[] {'\\', 'u', '0', '0', '0', '0'};
                 }
+                hhhh[2] = HEX[(c >> 12) & 0xf];
+                hhhh[3] = HEX[(c >> 8) & 0xf];
+                hhhh[4] = HEX[(c >> 4) & 0xf];
+                hhhh[5] = HEX[c & 0xf];
+                w.write(hhhh, 0, 6);
+            } else {
+                w.write('\\');
+                w.write(escape);
             }
+            start = i + 1;
         }
         w.write('"');
         return w;
@@ -1244,18 +1265,20 @@ public class JSONObject {
      * @return A simple JSON value.
      */
     public static Object stringToValue(String string) {
-        Double d;
-        if (string.equals("")) {
+        if (string.length() == 0) {
             return string;
         }
-        if (string.equalsIgnoreCase("true")) {
-            return Boolean.TRUE;
-        }
-        if (string.equalsIgnoreCase("false")) {
-            return Boolean.FALSE;
-        }
-        if (string.equalsIgnoreCase("null")) {
-            return JSONObject.NULL;
+        char b = string.charAt(0);
+        switch (b) {
+        case 't':
+        case 'T':
+            return string.equalsIgnoreCase("true") ? Boolean.TRUE : string;
+        case 'f':
+        case 'F':
+            return string.equalsIgnoreCase("false") ? Boolean.FALSE : string;
+        case 'n':
+        case 'N':
+            return string.equalsIgnoreCase("null") ? JSONObject.NULL : string;
         }
 
         /*
@@ -1266,27 +1289,211 @@ public class JSONObject {
          * non-JSON forms as long as it accepts all correct JSON forms.
          */
 
-        char b = string.charAt(0);
         if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+') {
-            try {
-                if (string.indexOf('.') > -1 ||
-                        string.indexOf('e') > -1 || string.indexOf('E') > -1) {
-                    d = Double.valueOf(string);
-                    if (!d.isInfinite() && !d.isNaN()) {
-                        return d;
-                    }
+            Object number = stringToNumber(string);
+            if (number == null && hasJavaSyntax(string)) {
+                number = javaToNumber(string);
+            }
+            if (number != null) {
+                return number;
+            }
+        }
+        return string;
+    }
+
+
+    /**
+     * Determine if a string that is not a number in JSON syntax might still be
+     * one to Double.valueOf or Long.valueOf: a hexadecimal float, a number
+     * with trailing whitespace, or one with digits other than ASCII.
+     */
+    private static boolean hasJavaSyntax(String string) {
+        for (int i = 0; i < string.length(); i += 1) {
+            char c = string.charAt(i);
+            if (c <= ' ' || c >= 0x80 || c == 'x' || c == 'X') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * Convert a string as stringToValue always has, with Double.valueOf if
+     * it has a decimal point or an exponent and with Long.valueOf if not.
+     * This is only used for the rare forms that stringToNumber does not
+     * scan, since a malformed string costs an exception.
+     * @return A Number, or null if the string is not a finite number.
+     */
+    private static Object javaToNumber(String string) {
+        try {
+            if (string.indexOf('.') > -1 ||
+                    string.indexOf('e') > -1 || string.indexOf('E') > -1) {
+                Double d = Double.valueOf(string);
+                if (!d.isInfinite() && !d.isNaN()) {
+                    return d;
+                }
+            } else {
+                long value = Long.parseLong(string);
+                if (value == (int)value) {
+                    return Integer.valueOf((int)value);
+                }
+                return Long.valueOf(value);
+            }
+        } catch (NumberFormatException ignore) {
+        }
+        return null;
+    }
+
+
+    /**
+     * The powers of ten that a double holds exactly.
+     */
+    static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Convert a string to an Integer, Long, or Double in a single pass,
+     * without using exceptions. A string with a decimal point or an exponent
+     * is a Double, and may end with one of the Java suffixes d, D, f, or F.
+     * Otherwise it is an Integer if it fits in an int, or a Long if it fits
+     * in a long. Small Integers and Longs are the shared boxes of valueOf.
+     * @param string A String, starting with a digit, '.', '-', or '+'.
+     * @return A Number, or null if the string is not a finite number.
+     */
+    private static Object stringToNumber(String string) {
+        int length = string.length();
+        int i = 0;
+        char c = string.charAt(0);
+        boolean negative = c == '-';
+        if (c == '-' || c == '+') {
+            i = 1;
+        }
+
+// The integer value is accumulated negatively, as Long.parseLong does, so
+// that Long.MIN_VALUE can be reached.
+
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long value = 0;
+        boolean overflow = false;
+        long mantissa = 0;
+        int significant = 0;
+        int scale = 0;
+        int digits = 0;
+        while (i < length && (c = string.charAt(i)) >= '0' && c <= '9') {
+            int d = c - '0';
+            if (!overflow) {
+                if (value < limit / 10 || value * 10 < limit + d) {
+                    overflow = true;
+                } else {
+                    value = value * 10 - d;
+                }
+            }
+            if (significant > 0 || d > 0) {
+                significant += 1;
+                if (significant <= 15) {
+                    mantissa = mantissa * 10 + d;
                 } else {
-                    Long myLong = new Long(string);
-                    if (myLong.longValue() == myLong.intValue()) {
-                        return new Integer(myLong.intValue());
-                    } else {
-                        return myLong;
+                    scale += 1;
+                }
+            }
+            digits += 1;
+            i += 1;
+        }
+
+        boolean decimal = false;
+        if (i < length && string.charAt(i) == '.') {
+            decimal = true;
+            i += 1;
+            while (i < length && (c = string.charAt(i)) >= '0' && c <= '9') {
+                int d = c - '0';
+                if (significant > 0 || d > 0) {
+                    significant += 1;
+                    if (significant <= 15) {
+                        mantissa = mantissa * 10 + d;
+                        scale -= 1;
                     }
+                } else {
+                    scale -= 1;
                 }
-            }  catch (Exception ignore) {
+                digits += 1;
+                i += 1;
             }
         }
-        return string;
+        if (digits == 0) {
+            return null;
+        }
+
+        int exponent = 0;
+        if (i < length && ((c = string.charAt(i)) == 'e' || c == 'E')) {
+            decimal = true;
+            i += 1;
+            boolean negativeExponent = false;
+            if (i < length && ((c = string.charAt(i)) == '-' || c == '+')) {
+                negativeExponent = c == '-';
+                i += 1;
+            }
+            int exponentDigits = 0;
+            while (i < length && (c = string.charAt(i)) >= '0' && c <= '9') {
+                if (exponent < 100000) {
+                    exponent = exponent * 10 + (c - '0');
+                }
+                exponentDigits += 1;
+                i += 1;
+            }
+            if (exponentDigits == 0) {
+                return null;
+            }
+            if (negativeExponent) {
+                exponent = -exponent;
+            }
+        }
+        if (decimal && i == length - 1 &&
+                ((c = string.charAt(i)) == 'd' || c == 'D' ||
+                c == 'f' || c == 'F')) {
+            i += 1;
+        }
+        if (i < length) {
+            return null;
+        }
+
+        if (!decimal) {
+            if (overflow) {
+                return null;
+            }
+            if (!negative) {
+                value = -value;
+            }
+            if (value == (int)value) {
+                return Integer.valueOf((int)value);
+            }
+            return Long.valueOf(value);
+        }
+
+// A mantissa of at most 15 digits and a power of ten of at most 22 are both
+// exact doubles, so one multiplication or division rounds correctly. Other
+// numbers are left to Double.valueOf, which cannot fail on this syntax.
+
+        double d;
+        int power = scale + exponent;
+        if (significant <= 15 && power >= -22 && power <= 22) {
+            d = power < 0
+                ? mantissa / POWERS_OF_TEN[-power]
+                : mantissa * POWERS_OF_TEN[power];
+            if (negative) {
+                d = -d;
+            }
+        } else if (mantissa == 0) {
+            d = negative ? -0.0 : 0.0;
+        } else {
+            d = Double.parseDouble(string);
+        }
+        if (Double.isInfinite(d)) {
+            return null;
+        }
+        return Double.valueOf(d);
     }
 
 
@@ -1495,6 +1702,27 @@ public class JSONObject {
     }
 
 
+    /**
+     * Write the contents of the JSONObject as UTF-8 encoded JSON text to an
+     * OutputStream, without making a String first. For compactness, no
+     * whitespace is added.
+     * <p>
+     * Warning: This method assumes that the data structure is acyclical.
+     *
+     * @param out The stream. It is flushed, but not closed.
+     * @throws JSONException
+     */
+    public void writeTo(OutputStream out) throws JSONException {
+        JSONByteSink sink = new JSONByteSink(out);
+        this.write(sink, 0, 0);
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+    }
+
+
     static final Writer writeValue(Writer writer, Object value,
             int indentFactor, int indent) throws JSONException, IOException {
         if (value instanceof JSONObject) {
@@ -1508,6 +1736,9 @@ public class JSONObject {
                     indent);
         } else if (value.getClass().isArray()) {
             new JSONArray(value).write(writer, indentFactor, indent);
+        } else if (value instanceof Double) {
+            testValidity(value);
+            JSONDouble.write(writer, ((Double) value).doubleValue());
         } else if (value instanceof Number) {
             writer.write(numberToString((Number) value));
         } else if (value instanceof Boolean) {
@@ -1553,7 +1784,7 @@ public class JSONObject {
 
             if (length == 1) {
                 Object key = keys.next();
-                writer.write(quote(key.toString()));
+                quote(key.toString(), writer);
                 writer.write(':');
                 if (indentFactor > 0) {
                     writer.write(' ');
@@ -1570,7 +1801,7 @@ public class JSONObject {
                         writer.write('\n');
                     }
                     indent(writer, newindent);
-                    writer.write(quote(key.toString()));
+                    quote(key.toString(), writer);
                     writer.write(':');
                     if (indentFactor > 0) {
                         writer.write(' ');
@@ -0,0 +1,184 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * JSONParser parses objects and arrays without recursion. The objects and
+ * arrays that are open are kept on an explicit stack, so a deeply nested
+ * text costs heap instead of thread stack, and a text nested deeper than the
+ * tokener's maximum depth is refused with a JSONException.
+ * <p>
+ * It accepts exactly what the recursive JSONObject and JSONArray parsers
+ * accept, in the same order of tokener calls, so it builds the same trees
+ * and reports the same errors. It is used in place of them when a tokener
+ * has a maximum depth.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+final class JSONParser {
+
+    private JSONParser() {
+    }
+
+
+    /**
+     * Parse an object or an array into an empty JSONObject or JSONArray.
+     * @param x    A JSONTokener, with a maximum depth.
+     * @param root The empty JSONObject or JSONArray.
+     * @throws JSONException If there is a syntax error, a duplicated key, or
+     *  nesting deeper than the maximum depth.
+     */
+    static void parse(JSONTokener x, Object root) throws JSONException {
+        int maxDepth = x.maxDepth;
+        Object[] containers = new Object[Math.min(maxDepth, 16)];
+        String[] keys = new String[containers.length];
+        int top = 0;
+        Object container = root;
+        containers[0] = root;
+
+        char c = x.nextClean();
+        if (root instanceof JSONObject) {
+            if (c != '{') {
+                throw x.syntaxError("A JSONObject text must begin with '{'");
+            }
+        } else if (c != '[') {
+            throw x.syntaxError("A JSONArray text must start with '['");
+        }
+
+        for (;;) {
+
+// At the start of a member or an element, or at the end of the container.
+
+            Object value = null;
+            boolean close = false;
+            if (container instanceof JSONObject) {
+                c = x.nextClean();
+                if (c == 0) {
+                    throw x.syntaxError(
+                            "A JSONObject text must end with '}'");
+                }
+                if (c == '}') {
+                    close = true;
+                } else {
+                    x.back();
+                    keys[top] = x.nextKey();
+
+// The key is followed by ':'. We will also tolerate '=' or '=>'.
+
+                    c = x.nextClean();
+                    if (c == '=') {
+                        if (x.next() != '>') {
+                            x.back();
+                        }
+                    } else if (c != ':') {
+                        throw x.syntaxError("Expected a ':' after a key");
+                    }
+                    c = x.nextClean();
+                }
+            } else {
+                c = x.nextClean();
+                if (c == ']') {
+                    close = true;
+                } else if (c == ',') {
+                    x.back();
+                    value = JSONObject.NULL;
+                }
+            }
+
+// Open a nested object or array, or read a simple value.
+
+            if (!close && value == null) {
+                if (c == '{' || c == '[') {
+                    top += 1;
+                    if (top >= maxDepth) {
+                        throw x.syntaxError("Nesting deeper than " +
+                                maxDepth);
+                    }
+                    if (top == containers.length) {
+                        int length = Math.min(top * 2, maxDepth);
+                        Object[] newContainers = new Object[length];
+                        System.arraycopy(containers, 0, newContainers, 0,
+                                top);
+                        containers = newContainers;
+                        String[] newKeys = new String[length];
+                        System.arraycopy(keys, 0, newKeys, 0, top);
+                        keys = newKeys;
+                    }
+                    if (c == '{') {
+                        container = x.pool == null
+                            ? new JSONObject()
+                            : x.pool.takeObject();
+                    } else {
+                        container = x.pool == null
+                            ? new JSONArray()
+                            : x.pool.takeArray();
+                    }
+                    containers[top] = container;
+                    continue;
+                }
+                x.back();
+                value = x.nextValue();
+            }
+
+// Close containers and add values until one has more to read.
+
+            for (;;) {
+                if (close) {
+                    value = container;
+                    containers[top] = null;
+                    top -= 1;
+                    if (top < 0) {
+                        return;
+                    }
+                    container = containers[top];
+                }
+                if (container instanceof JSONObject) {
+                    ((JSONObject)container).putOnce(keys[top], value);
+                    keys[top] = null;
+
+// Pairs are separated by ','. We will also tolerate ';'.
+
+                    c = x.nextClean();
+                    if (c == ',' || c == ';') {
+                        break;
+                    }
+                    if (c != '}') {
+                        throw x.syntaxError("Expected a ',' or '}'");
+                    }
+                } else {
+                    ((JSONArray)container).put(value);
+                    c = x.nextClean();
+                    if (c == ',' || c == ';') {
+                        break;
+                    }
+                    if (c != ']') {
+                        throw x.syntaxError("Expected a ',' or ']'");
+                    }
+                }
+                close = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,549 @@
+package org.json;
+
+import java.util.Arrays;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONPath is a set of paths, compiled once, that can pull the values at
+ * those paths out of UTF-8 JSON text without parsing the rest of it. The text
+ * is scanned forward once: members and elements that are not on a path are
+ * skipped by matching brackets, and the scan stops as soon as every path has
+ * been found. Only the values that are found are parsed.
+ * <p>
+ * A path begins with <code>$</code>, followed by any number of
+ * <code>.name</code>, <code>["name"]</code> or <code>[index]</code> steps.
+ * For example:
+ * <pre>
+ * JSONPath paths = JSONPath.compile("$.meta.type", "$.meta.tenant");
+ * Object[] values = paths.extract(bytes, offset, length);
+ * </pre>
+ * The values are in the order of the paths. A value that is not found is
+ * null; a JSON null is JSONObject.NULL. If a key repeats, the value of its
+ * first occurrence is taken. A JSONPath is immutable and can be
+ * shared between threads.
+ * <p>
+ * Like JSONLazyObject, the scan expects standard JSON: the forgiving syntax
+ * of JSONTokener is not accepted.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public final class JSONPath {
+
+    /**
+     * A step in the tree of compiled paths.
+     */
+    private static final class Node {
+
+        /**
+         * The member name of this step, or null if it is an array index.
+         */
+        final String name;
+
+        /**
+         * The member name encoded as UTF-8, for comparing without decoding.
+         */
+        final byte[] bytes;
+
+        /**
+         * The array index of this step, or -1 if it is a member name.
+         */
+        final int index;
+
+        /**
+         * The steps that follow this one, or null.
+         */
+        Node[] children;
+
+        /**
+         * The position in the values of the path that ends here, or -1.
+         */
+        int target = -1;
+
+        Node(String name, int index) {
+            this.name = name;
+            this.bytes = name == null ? null
+                : name.getBytes(JSONByteTokener.UTF8);
+            this.index = index;
+        }
+
+        Node child(String name, int index) {
+            int length = this.children == null ? 0 : this.children.length;
+            for (int i = 0; i < length; i += 1) {
+                Node child = this.children[i];
+                if (name == null ? child.name == null && child.index == index
+                        : name.equals(child.name)) {
+                    return child;
+                }
+            }
+            Node[] newChildren = new Node[length + 1];
+            if (length > 0) {
+                System.arraycopy(this.children, 0, newChildren, 0, length);
+            }
+            newChildren[length] = new Node(name, index);
+            this.children = newChildren;
+            return newChildren[length];
+        }
+    }
+
+
+    /**
+     * The state of one extraction.
+     */
+    private static final class Scan {
+        final byte[] bytes;
+        final int offset;
+        final int limit;
+        final Object[] values;
+        int remaining;
+
+        Scan(byte[] bytes, int offset, int limit, Object[] values,
+                int remaining) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.limit = limit;
+            this.values = values;
+            this.remaining = remaining;
+        }
+    }
+
+
+    /**
+     * The paths, as they were given.
+     */
+    private final String[] paths;
+
+    /**
+     * The root of the tree of steps.
+     */
+    private final Node root;
+
+    /**
+     * For each path, the position of its value. A path that repeats an
+     * earlier one shares the earlier one's position.
+     */
+    private final int[] targets;
+
+    /**
+     * The number of distinct paths.
+     */
+    private final int distinct;
+
+
+    private JSONPath(String[] paths) throws JSONException {
+        this.paths = paths.clone();
+        this.root = new Node(null, -1);
+        this.targets = new int[paths.length];
+        int distinct = 0;
+        for (int i = 0; i < paths.length; i += 1) {
+            Node node = this.compile(paths[i]);
+            if (node.target < 0) {
+                node.target = i;
+                distinct += 1;
+            }
+            this.targets[i] = node.target;
+        }
+        this.distinct = distinct;
+    }
+
+
+    /**
+     * Compile a set of paths.
+     * @param paths The paths, each beginning with <code>$</code>.
+     * @return The compiled paths.
+     * @throws JSONException If a path is malformed.
+     */
+    public static JSONPath compile(String... paths) throws JSONException {
+        return new JSONPath(paths);
+    }
+
+
+    /**
+     * Compile one path into the tree of steps.
+     * @return The node where the path ends.
+     */
+    private Node compile(String path) throws JSONException {
+        if (path == null || !path.startsWith("$")) {
+            throw new JSONException("JSONPath " + quoteOrNull(path) +
+                    " must begin with '$'.");
+        }
+        Node node = this.root;
+        int length = path.length();
+        int i = 1;
+        while (i < length) {
+            char c = path.charAt(i);
+            if (c == '.') {
+                int start = i + 1;
+                i = start;
+                while (i < length && path.charAt(i) != '.' &&
+                        path.charAt(i) != '[') {
+                    i += 1;
+                }
+                if (i == start) {
+                    throw badPath(path, i);
+                }
+                node = node.child(path.substring(start, i), -1);
+            } else if (c == '[' && i + 1 < length &&
+                    (path.charAt(i + 1) == '"' ||
+                    path.charAt(i + 1) == '\'')) {
+                char quote = path.charAt(i + 1);
+                int end = path.indexOf(quote, i + 2);
+                if (end < 0 || end + 1 >= length ||
+                        path.charAt(end + 1) != ']') {
+                    throw badPath(path, i);
+                }
+                node = node.child(path.substring(i + 2, end), -1);
+                i = end + 2;
+            } else if (c == '[') {
+                int end = path.indexOf(']', i + 1);
+                if (end < 0) {
+                    throw badPath(path, i);
+                }
+                int index;
+                try {
+                    index = Integer.parseInt(path.substring(i + 1, end));
+                } catch (NumberFormatException e) {
+                    throw badPath(path, i);
+                }
+                if (index < 0) {
+                    throw badPath(path, i);
+                }
+                node = node.child(null, index);
+                i = end + 1;
+            } else {
+                throw badPath(path, i);
+            }
+        }
+        return node;
+    }
+
+
+    private static JSONException badPath(String path, int index) {
+        return new JSONException("JSONPath " + JSONObject.quote(path) +
+                " is malformed at " + index + ".");
+    }
+
+
+    private static String quoteOrNull(String string) {
+        return string == null ? "null" : JSONObject.quote(string);
+    }
+
+
+    /**
+     * Locate the elements of a JSON array in a buffer without parsing them,
+     * so that each can be scanned or parsed on its own.
+     * @param bytes  The UTF-8 source.
+     * @param offset The index of the first byte of the array.
+     * @param length The number of bytes.
+     * @return The offset and the length of each element, in pairs.
+     * @throws JSONException If the source is not a well formed array.
+     */
+    public static int[] elements(byte[] bytes, int offset, int length)
+            throws JSONException {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int limit = offset + length;
+        int i = JSONLazyObject.skipWhitespace(bytes, offset, limit);
+        if (i >= limit || bytes[i] != '[') {
+            throw JSONLazyObject.syntaxError(
+                    "A JSONArray text must start with '['", i, offset);
+        }
+        int[] spans = new int[8];
+        int count = 0;
+        i = JSONLazyObject.skipWhitespace(bytes, i + 1, limit);
+        if (i < limit && bytes[i] == ']') {
+            return new int[0];
+        }
+        for (;;) {
+            int start = i;
+            i = JSONLazyObject.skipValue(bytes, i, limit, offset);
+            if (count + 2 > spans.length) {
+                int[] newSpans = new int[spans.length * 2];
+                System.arraycopy(spans, 0, newSpans, 0, count);
+                spans = newSpans;
+            }
+            spans[count] = start;
+            spans[count + 1] = i - start;
+            count += 2;
+            i = JSONLazyObject.skipWhitespace(bytes, i, limit);
+            if (i >= limit) {
+                throw JSONLazyObject.syntaxError(
+                        "A JSONArray text must end with ']'", i, offset);
+            }
+            if (bytes[i] == ']') {
+                break;
+            }
+            if (bytes[i] != ',') {
+                throw JSONLazyObject.syntaxError("Expected a ',' or ']'", i,
+                        offset);
+            }
+            i = JSONLazyObject.skipWhitespace(bytes, i + 1, limit);
+        }
+        int[] result = new int[count];
+        System.arraycopy(spans, 0, result, 0, count);
+        return result;
+    }
+
+
+    /**
+     * Extract the values at the paths from UTF-8 JSON text.
+     * @param bytes The UTF-8 source.
+     * @return The values, in the order of the paths. A value that is not
+     *  found is null.
+     * @throws JSONException If the text is malformed where it was scanned.
+     */
+    public Object[] extract(byte[] bytes) throws JSONException {
+        return this.extract(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Extract the values at the paths from a range of UTF-8 JSON text.
+     * @param bytes  The UTF-8 source.
+     * @param offset The index of the first byte of the text.
+     * @param length The number of bytes.
+     * @return The values, in the order of the paths. A value that is not
+     *  found is null.
+     * @throws JSONException If the text is malformed where it was scanned.
+     */
+    public Object[] extract(byte[] bytes, int offset, int length)
+            throws JSONException {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        Object[] values = new Object[this.targets.length];
+        if (this.distinct > 0) {
+            int limit = offset + length;
+            Scan scan = new Scan(bytes, offset, limit, values,
+                    this.distinct);
+            this.scan(scan, this.root,
+                    JSONLazyObject.skipWhitespace(bytes, offset, limit));
+            for (int i = 0; i < this.targets.length; i += 1) {
+                if (this.targets[i] != i) {
+                    values[i] = values[this.targets[i]];
+                }
+            }
+        }
+        return values;
+    }
+
+
+    /**
+     * Extract the values at the paths from a JSON text string.
+     * @param source The JSON text.
+     * @return The values, in the order of the paths. A value that is not
+     *  found is null.
+     * @throws JSONException If the text is malformed where it was scanned.
+     */
+    public Object[] extract(String source) throws JSONException {
+        return this.extract(source.getBytes(JSONByteTokener.UTF8));
+    }
+
+
+    /**
+     * Get the number of paths.
+     * @return The number of paths, which is the length of the values.
+     */
+    public int length() {
+        return this.paths.length;
+    }
+
+
+    /**
+     * Scan a value, descending into the steps that follow the node.
+     * @param i The index of the first byte of the value.
+     * @return The index after the value, or -1 if every path has been found.
+     */
+    private int scan(Scan scan, Node node, int i) throws JSONException {
+        byte[] bytes = scan.bytes;
+        int start = i;
+        int end;
+        if (node.children == null || i >= scan.limit) {
+            end = JSONLazyObject.skipValue(bytes, i, scan.limit, scan.offset);
+        } else if (bytes[i] == '{') {
+            end = this.scanObject(scan, node, i);
+        } else if (bytes[i] == '[') {
+            end = this.scanArray(scan, node, i);
+        } else {
+            end = JSONLazyObject.skipValue(bytes, i, scan.limit, scan.offset);
+        }
+        if (node.target >= 0 && scan.values[node.target] == null) {
+
+// The paths below this one cannot all have been found yet, since this one is
+// still counted as remaining, so end is known. A path is counted once, when
+// it is first found, even if its key repeats.
+
+            scan.values[node.target] = new JSONByteTokener(bytes, start,
+                    end - start).nextValue();
+            scan.remaining -= 1;
+            if (scan.remaining == 0) {
+                return -1;
+            }
+        }
+        return end;
+    }
+
+
+    private int scanArray(Scan scan, Node node, int i) throws JSONException {
+        byte[] bytes = scan.bytes;
+        int limit = scan.limit;
+        i = JSONLazyObject.skipWhitespace(bytes, i + 1, limit);
+        if (i < limit && bytes[i] == ']') {
+            return i + 1;
+        }
+        for (int index = 0;; index += 1) {
+            Node child = null;
+            for (int j = 0; j < node.children.length; j += 1) {
+                if (node.children[j].index == index) {
+                    child = node.children[j];
+                    break;
+                }
+            }
+            if (child == null) {
+                i = JSONLazyObject.skipValue(bytes, i, limit, scan.offset);
+            } else {
+                i = this.scan(scan, child, i);
+                if (i < 0) {
+                    return -1;
+                }
+            }
+            i = JSONLazyObject.skipWhitespace(bytes, i, limit);
+            if (i >= limit) {
+                throw JSONLazyObject.syntaxError(
+                        "A JSONArray text must end with ']'", i, scan.offset);
+            }
+            if (bytes[i] == ']') {
+                return i + 1;
+            }
+            if (bytes[i] != ',') {
+                throw JSONLazyObject.syntaxError("Expected a ',' or ']'", i,
+                        scan.offset);
+            }
+            i = JSONLazyObject.skipWhitespace(bytes, i + 1, limit);
+        }
+    }
+
+
+    private int scanObject(Scan scan, Node node, int i) throws JSONException {
+        byte[] bytes = scan.bytes;
+        int limit = scan.limit;
+        i = JSONLazyObject.skipWhitespace(bytes, i + 1, limit);
+        if (i < limit && bytes[i] == '}') {
+            return i + 1;
+        }
+        for (;;) {
+            if (i >= limit || bytes[i] != '"') {
+                throw JSONLazyObject.syntaxError("Expected a quoted key", i,
+                        scan.offset);
+            }
+            int keyStart = i + 1;
+            i = JSONLazyObject.skipString(bytes, i, limit, scan.offset);
+            Node child = find(node, bytes, keyStart, i - 1);
+            i = JSONLazyObject.skipWhitespace(bytes, i, limit);
+            if (i >= limit || bytes[i] != ':') {
+                throw JSONLazyObject.syntaxError("Expected a ':' after a key",
+                        i, scan.offset);
+            }
+            i = JSONLazyObject.skipWhitespace(bytes, i + 1, limit);
+            if (child == null) {
+                i = JSONLazyObject.skipValue(bytes, i, limit, scan.offset);
+            } else {
+                i = this.scan(scan, child, i);
+                if (i < 0) {
+                    return -1;
+                }
+            }
+            i = JSONLazyObject.skipWhitespace(bytes, i, limit);
+            if (i >= limit) {
+                throw JSONLazyObject.syntaxError(
+                        "A JSONObject text must end with '}'", i, scan.offset);
+            }
+            if (bytes[i] == '}') {
+                return i + 1;
+            }
+            if (bytes[i] != ',') {
+                throw JSONLazyObject.syntaxError("Expected a ',' or '}'", i,
+                        scan.offset);
+            }
+            i = JSONLazyObject.skipWhitespace(bytes, i + 1, limit);
+        }
+    }
+
+
+    /**
+     * Find the step that follows a node for a key in the source. The key is
+     * compared as bytes, and is only decoded if it has escapes.
+     * @return The step, or null if the key is not on a path.
+     */
+    private static Node find(Node node, byte[] bytes, int start, int end)
+            throws JSONException {
+        String key = null;
+        for (int i = start; i < end; i += 1) {
+            if (bytes[i] == '\\') {
+                key = new JSONByteTokener(bytes, start, end + 1 - start)
+                    .nextString('"');
+                break;
+            }
+        }
+        for (int i = 0; i < node.children.length; i += 1) {
+            Node child = node.children[i];
+            if (child.name == null) {
+                continue;
+            }
+            if (key != null) {
+                if (key.equals(child.name)) {
+                    return child;
+                }
+            } else if (equals(child.bytes, bytes, start, end)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+
+    private static boolean equals(byte[] name, byte[] bytes, int start,
+            int end) {
+        if (name.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i += 1) {
+            if (name[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Make a string of the paths, for debugging.
+     * @return The paths, as a JSON array.
+     */
+    public String toString() {
+        return new JSONArray(Arrays.asList(this.paths)).toString();
+    }
+}
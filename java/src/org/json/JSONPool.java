@@ -0,0 +1,200 @@
+package org.json;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONPool recycles the JSONObjects and JSONArrays of parsed texts. A loop
+ * that parses one text after another, and is done with each before parsing
+ * the next, can parse through a pool and call <code>recycle</code> between
+ * texts. The objects and arrays of the last text, and their storage, are then
+ * emptied and used again, so that in a steady state parsing allocates little
+ * beyond the strings.
+ * <p>
+ * For example:
+ * <pre>
+ * JSONPool pool = new JSONPool();
+ * for (;;) {
+ *     JSONArray response = pool.parseArray(new JSONByteTokener(bytes));
+ *     ...
+ *     pool.recycle();
+ * }
+ * </pre>
+ * After <code>recycle</code>, nothing parsed through the pool may be used,
+ * and no reference to it may be kept. A pool is meant to be owned by a single
+ * thread, and is not synchronized.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public final class JSONPool {
+
+    /**
+     * The most objects, and the most arrays, that a pool keeps. Any more
+     * are left to the garbage collector.
+     */
+    static final int MAX_SIZE = 4096;
+
+    private JSONArray[] arrays = new JSONArray[16];
+
+    /**
+     * The number of arrays in the pool, and the number given out since the
+     * last recycle.
+     */
+    private int arrayCount;
+    private int arraysUsed;
+
+    private JSONObject[] objects = new JSONObject[16];
+
+    /**
+     * The number of objects in the pool, and the number given out since the
+     * last recycle.
+     */
+    private int objectCount;
+    private int objectsUsed;
+
+
+    /**
+     * Parse a JSONArray from a tokener, taking it and everything in it from
+     * the pool.
+     * @param x A JSONTokener.
+     * @return The array.
+     * @throws JSONException If there is a syntax error.
+     */
+    public JSONArray parseArray(JSONTokener x) throws JSONException {
+        JSONPool pool = x.pool;
+        x.pool = this;
+        try {
+            return this.array(x);
+        } finally {
+            x.pool = pool;
+        }
+    }
+
+
+    /**
+     * Parse a JSONObject from a tokener, taking it and everything in it from
+     * the pool.
+     * @param x A JSONTokener.
+     * @return The object.
+     * @throws JSONException If there is a syntax error.
+     */
+    public JSONObject parseObject(JSONTokener x) throws JSONException {
+        JSONPool pool = x.pool;
+        x.pool = this;
+        try {
+            return this.object(x);
+        } finally {
+            x.pool = pool;
+        }
+    }
+
+
+    /**
+     * Empty every object and array given out since the last recycle, so that
+     * they can be given out again.
+     */
+    public void recycle() {
+        for (int i = 0; i < this.objectsUsed; i += 1) {
+            this.objects[i].clear();
+        }
+        this.objectsUsed = 0;
+        for (int i = 0; i < this.arraysUsed; i += 1) {
+            this.arrays[i].clear();
+        }
+        this.arraysUsed = 0;
+    }
+
+
+    /**
+     * Parse a JSONArray into an array from the pool.
+     */
+    JSONArray array(JSONTokener x) throws JSONException {
+        JSONArray array = this.takeArray();
+        array.parse(x);
+        return array;
+    }
+
+
+    /**
+     * Parse a JSONObject into an object from the pool.
+     */
+    JSONObject object(JSONTokener x) throws JSONException {
+        JSONObject object = this.takeObject();
+        object.parse(x);
+        return object;
+    }
+
+
+    /**
+     * Take an empty array from the pool.
+     */
+    JSONArray takeArray() {
+        JSONArray array;
+        if (this.arraysUsed < this.arrayCount) {
+            array = this.arrays[this.arraysUsed];
+            this.arraysUsed += 1;
+        } else {
+            array = new JSONArray();
+            if (this.arrayCount < MAX_SIZE) {
+                if (this.arrayCount == this.arrays.length) {
+                    JSONArray[] newArrays = new JSONArray[this.arrayCount * 2];
+                    System.arraycopy(this.arrays, 0, newArrays, 0,
+                            this.arrayCount);
+                    this.arrays = newArrays;
+                }
+                this.arrays[this.arrayCount] = array;
+                this.arrayCount += 1;
+                this.arraysUsed += 1;
+            }
+        }
+        return array;
+    }
+
+
+    /**
+     * Take an empty object from the pool.
+     */
+    JSONObject takeObject() {
+        JSONObject object;
+        if (this.objectsUsed < this.objectCount) {
+            object = this.objects[this.objectsUsed];
+            this.objectsUsed += 1;
+        } else {
+            object = new JSONObject();
+            if (this.objectCount < MAX_SIZE) {
+                if (this.objectCount == this.objects.length) {
+                    JSONObject[] newObjects =
+                        new JSONObject[this.objectCount * 2];
+                    System.arraycopy(this.objects, 0, newObjects, 0,
+                            this.objectCount);
+                    this.objects = newObjects;
+                }
+                this.objects[this.objectCount] = object;
+                this.objectCount += 1;
+                this.objectsUsed += 1;
+            }
+        }
+        return object;
+    }
+}
@@ -0,0 +1,447 @@
+package org.json;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONPushParser parses UTF-8 JSON text that arrives in chunks, as from a
+ * non-blocking socket. Chunks of any size are given to <code>feed</code>,
+ * which never blocks: it scans them, keeping its state from one chunk to the
+ * next, and each value is parsed as soon as its last byte arrives. Complete
+ * values are then taken with <code>next</code>.
+ * <p>
+ * By default the values are the top-level values of the stream, such as one
+ * response after another. A parser can instead split arrays: with a depth of
+ * 1, each element of a top-level array is a value of its own, as soon as it
+ * is complete, and the array itself is never built. With a depth of 2, the
+ * elements of arrays within a top-level array are values, and so on. A value
+ * that is not an array at a level that is split is a value as a whole.
+ * For example, with a depth of 2 a subscribe response
+ * <code>[[{...},{...}],"13"]</code> gives each message and then the time
+ * token:
+ * <pre>
+ * JSONPushParser parser = new JSONPushParser(2);
+ * // As each chunk arrives:
+ * parser.feed(chunk, 0, n);
+ * while (parser.hasNext()) {
+ *     Object value = parser.next();
+ *     ...
+ * }
+ * // When the stream ends:
+ * parser.end();
+ * </pre>
+ * Only the bytes of the value in progress are kept between chunks, and a
+ * value that lies within one chunk is parsed straight from it. Between the
+ * values it splits, the parser accepts standard JSON only. A
+ * JSONPushParser is not synchronized.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public class JSONPushParser {
+
+    /**
+     * What may come next outside of a value.
+     */
+    private static final int VALUE = 0;
+    private static final int VALUE_OR_CLOSE = 1;
+    private static final int SEPARATOR = 2;
+
+    /**
+     * The characters that end an unquoted value, as in JSONByteTokener.
+     */
+    private static final boolean[] DELIMITER = new boolean[128];
+    static {
+        String delimiters = ",:]}/\\\"[{;=#";
+        for (int i = 0; i < delimiters.length(); i += 1) {
+            DELIMITER[delimiters.charAt(i)] = true;
+        }
+    }
+
+    /**
+     * The bytes of the value in progress that arrived in earlier chunks.
+     */
+    private byte[] buffer = new byte[256];
+
+    /**
+     * Whether a value is in progress.
+     */
+    private boolean capturing;
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int count;
+
+    /**
+     * The number of arrays to split.
+     */
+    private final int depth;
+
+    /**
+     * Whether the last byte of a string was a backslash.
+     */
+    private boolean escape;
+
+    /**
+     * What may come next outside of a value.
+     */
+    private int expect = VALUE;
+
+    /**
+     * The number of arrays open outside of the value in progress.
+     */
+    private int level;
+
+    /**
+     * The maximum depth given to the tokeners, or 0.
+     */
+    private int maxDepth;
+
+    /**
+     * The number of objects and arrays open in the value in progress.
+     */
+    private int nesting;
+
+    /**
+     * The number of bytes fed before the current chunk.
+     */
+    private long position;
+
+    /**
+     * The quote of the string in progress, or 0.
+     */
+    private byte quote;
+
+    /**
+     * Whether the value in progress is an unquoted token.
+     */
+    private boolean scalar;
+
+    /**
+     * A copy of the chunk, when it comes in a ByteBuffer without an array.
+     */
+    private byte[] scratch;
+
+    /**
+     * The values that are complete but not yet taken.
+     */
+    private final ArrayDeque<Object> values = new ArrayDeque<Object>();
+
+
+    /**
+     * Construct a JSONPushParser that gives the top-level values of the
+     * stream.
+     */
+    public JSONPushParser() {
+        this(0);
+    }
+
+
+    /**
+     * Construct a JSONPushParser that splits arrays.
+     * @param depth The number of levels of arrays to split, or 0 to give
+     *  the top-level values whole.
+     */
+    public JSONPushParser(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("depth: " + depth);
+        }
+        this.depth = depth;
+    }
+
+
+    /**
+     * Append part of a chunk to the buffer, when the value in progress goes
+     * on into the next chunk.
+     */
+    private void append(byte[] bytes, int start, int end) {
+        int length = end - start;
+        if (this.count + length > this.buffer.length) {
+            byte[] newBuffer = new byte[Math.max(this.buffer.length * 2,
+                    this.count + length)];
+            System.arraycopy(this.buffer, 0, newBuffer, 0, this.count);
+            this.buffer = newBuffer;
+        }
+        System.arraycopy(bytes, start, this.buffer, this.count, length);
+        this.count += length;
+    }
+
+
+    /**
+     * Parse the value in progress, whose last byte is at end.
+     */
+    private void complete(byte[] bytes, int start, int end)
+            throws JSONException {
+        JSONByteTokener x;
+        if (this.count == 0) {
+            x = new JSONByteTokener(bytes, start, end - start);
+        } else {
+            this.append(bytes, start, end);
+            x = new JSONByteTokener(this.buffer, 0, this.count);
+        }
+        x.setMaxDepth(this.maxDepth);
+        Object value = x.nextValue();
+        if (x.nextClean() != 0) {
+            throw x.syntaxError("Unexpected text after a value");
+        }
+        this.values.add(value);
+        this.capturing = false;
+        this.count = 0;
+        this.expect = this.level == 0 ? VALUE : SEPARATOR;
+    }
+
+
+    /**
+     * Signal the end of the stream.
+     * @throws JSONException If the stream ends within a value or an array.
+     */
+    public void end() throws JSONException {
+        if (this.capturing) {
+            if (!this.scalar) {
+                throw this.syntaxError("Unterminated value", 0);
+            }
+            this.complete(this.buffer, 0, 0);
+        }
+        if (this.level > 0) {
+            throw this.syntaxError("A JSONArray text must end with ']'", 0);
+        }
+    }
+
+
+    /**
+     * Feed a chunk of the stream. Every value that the chunk completes can
+     * then be taken with <code>next</code>.
+     * @param bytes  The chunk.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     * @throws JSONException If the stream is malformed. The parser cannot
+     *  be used afterwards.
+     */
+    public void feed(byte[] bytes, int offset, int length)
+            throws JSONException {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        int end = offset + length;
+        int start = offset;
+        int i = offset;
+        while (i < end) {
+            if (this.capturing) {
+                i = this.scan(bytes, start, i, end);
+                continue;
+            }
+            byte b = bytes[i];
+            if (b >= 0 && b <= ' ') {
+                i += 1;
+                continue;
+            }
+            switch (b) {
+            case ',':
+                if (this.expect != SEPARATOR) {
+                    throw this.syntaxError("Unexpected ','", i - offset);
+                }
+                this.expect = VALUE;
+                i += 1;
+                continue;
+            case ']':
+                if (this.level == 0 || this.expect == VALUE) {
+                    throw this.syntaxError("Unexpected ']'", i - offset);
+                }
+                this.level -= 1;
+                this.expect = this.level == 0 ? VALUE : SEPARATOR;
+                i += 1;
+                continue;
+            case '[':
+                if (this.level < this.depth) {
+                    if (this.expect == SEPARATOR) {
+                        throw this.syntaxError("Expected a ',' or ']'",
+                                i - offset);
+                    }
+                    this.level += 1;
+                    this.expect = VALUE_OR_CLOSE;
+                    i += 1;
+                    continue;
+                }
+                break;
+            }
+            if (this.expect == SEPARATOR) {
+                throw this.syntaxError("Expected a ',' or ']'", i - offset);
+            }
+
+// The start of a value.
+
+            this.capturing = true;
+            this.nesting = 0;
+            this.quote = 0;
+            this.escape = false;
+            this.scalar = false;
+            start = i;
+            switch (b) {
+            case '{':
+            case '[':
+                this.nesting = 1;
+                break;
+            case '"':
+            case '\'':
+                this.quote = b;
+                break;
+            default:
+                this.scalar = true;
+            }
+            i += 1;
+        }
+        if (this.capturing) {
+            this.append(bytes, start, end);
+        }
+        this.position += length;
+    }
+
+
+    /**
+     * Feed a chunk of the stream, from the position to the limit of a
+     * ByteBuffer. The position is moved to the limit.
+     * @param buffer The chunk.
+     * @throws JSONException If the stream is malformed.
+     */
+    public void feed(ByteBuffer buffer) throws JSONException {
+        int length = buffer.remaining();
+        if (buffer.hasArray()) {
+            this.feed(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                    length);
+        } else {
+            if (this.scratch == null || this.scratch.length < length) {
+                this.scratch = new byte[Math.max(length, 1024)];
+            }
+            buffer.duplicate().get(this.scratch, 0, length);
+            this.feed(this.scratch, 0, length);
+        }
+        buffer.position(buffer.limit());
+    }
+
+
+    /**
+     * Determine if a complete value is waiting to be taken.
+     * @return true if <code>next</code> would return a value.
+     */
+    public boolean hasNext() {
+        return !this.values.isEmpty();
+    }
+
+
+    /**
+     * Take the next complete value.
+     * @return A Boolean, Double, Integer, JSONArray, JSONObject, Long, or
+     *  String, or the JSONObject.NULL object, or null if no value is
+     *  complete yet.
+     */
+    public Object next() {
+        return this.values.pollFirst();
+    }
+
+
+    /**
+     * Scan the value in progress.
+     * @param start The index in the chunk where the value starts, or the
+     *  start of the chunk if it started in an earlier one.
+     * @param i     The index to scan from.
+     * @return The index after the value, or the end of the chunk.
+     */
+    private int scan(byte[] bytes, int start, int i, int end)
+            throws JSONException {
+        if (this.scalar) {
+            while (i < end) {
+                byte b = bytes[i];
+                if (b >= 0 && (b <= ' ' || DELIMITER[b])) {
+                    this.complete(bytes, start, i);
+                    return i;
+                }
+                i += 1;
+            }
+            return i;
+        }
+        while (i < end) {
+            byte b = bytes[i];
+            i += 1;
+            if (this.quote != 0) {
+                if (this.escape) {
+                    this.escape = false;
+                } else if (b == '\\') {
+                    this.escape = true;
+                } else if (b == this.quote) {
+                    this.quote = 0;
+                    if (this.nesting == 0) {
+                        this.complete(bytes, start, i);
+                        return i;
+                    }
+                }
+                continue;
+            }
+            switch (b) {
+            case '"':
+            case '\'':
+                this.quote = b;
+                break;
+            case '{':
+            case '[':
+                this.nesting += 1;
+                break;
+            case '}':
+            case ']':
+                this.nesting -= 1;
+                if (this.nesting == 0) {
+                    this.complete(bytes, start, i);
+                    return i;
+                }
+                break;
+            }
+        }
+        return i;
+    }
+
+
+    /**
+     * Parse the values with an explicit stack, and refuse to nest them
+     * deeper than a limit, as <code>JSONTokener.setMaxDepth</code> does.
+     * @param maxDepth The maximum depth, or 0 to parse recursively.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+
+    /**
+     * Make a JSONException to signal a syntax error.
+     * @param message The error message.
+     * @param index   The index of the byte in the current chunk.
+     */
+    private JSONException syntaxError(String message, int index) {
+        return new JSONException(message + " at " + (this.position + index));
+    }
+}
@@ -0,0 +1,661 @@
+package org.json;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * A JSONReader reads a JSON text one token at a time, instead of building a
+ * whole JSONObject or JSONArray tree. It is the reading counterpart of
+ * JSONWriter. The caller walks the text with <code>beginArray</code>,
+ * <code>endArray</code>, <code>beginObject</code>, <code>endObject</code>,
+ * <code>nextName</code> and the <code>next</code> value methods, and can use
+ * <code>skipValue</code> to pass over any value it does not care about.
+ * <code>nextValue</code> builds a tree for just the current value.
+ * <p>
+ * This makes it possible to process very large arrays one element at a time,
+ * in constant memory. For example, to read every object of an array:
+ * <pre>
+ * JSONReader reader = new JSONReader(in);
+ * reader.beginArray();
+ * while (reader.hasNext()) {
+ *     JSONObject message = (JSONObject)reader.nextValue();
+ * }
+ * reader.endArray();
+ * </pre>
+ * <p>
+ * The reader is built on JSONTokener and accepts the same forgiving syntax
+ * as the JSONObject and JSONArray constructors.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public class JSONReader {
+
+    /** The next token is a <code>[</code>. */
+    public static final int BEGIN_ARRAY = 1;
+
+    /** The next token is a <code>]</code>. */
+    public static final int END_ARRAY = 2;
+
+    /** The next token is a <code>{</code>. */
+    public static final int BEGIN_OBJECT = 3;
+
+    /** The next token is a <code>}</code>. */
+    public static final int END_OBJECT = 4;
+
+    /** The next token is a key of an object. */
+    public static final int NAME = 5;
+
+    /** The next token is a quoted or unquoted string. */
+    public static final int STRING = 6;
+
+    /** The next token is a number. */
+    public static final int NUMBER = 7;
+
+    /** The next token is <code>true</code> or <code>false</code>. */
+    public static final int BOOLEAN = 8;
+
+    /** The next token is <code>null</code>. */
+    public static final int NULL = 9;
+
+    /** The end of the text has been reached. */
+    public static final int END_DOCUMENT = 10;
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    /**
+     * The quote character of a peeked string or name, or 0 if it is
+     * unquoted.
+     */
+    private char quote;
+
+    /**
+     * The value of a peeked unquoted token.
+     */
+    private Object literal;
+
+    /**
+     * The next token, or 0 if it has not been peeked yet.
+     */
+    private int peeked;
+
+    /**
+     * The source, if the reader owns it.
+     */
+    private final Reader reader;
+
+    /**
+     * The scope of each nesting level.
+     */
+    private int[] stack;
+
+    /**
+     * The current nesting level.
+     */
+    private int top;
+
+    /**
+     * The text of a peeked unquoted token.
+     */
+    private String text;
+
+    private final JSONTokener x;
+
+
+    /**
+     * Construct a JSONReader from a JSONTokener.
+     * @param x A JSONTokener.
+     */
+    public JSONReader(JSONTokener x) {
+        this(x, null);
+    }
+
+
+    /**
+     * Construct a JSONReader from a Reader. <code>close</code> will close
+     * the reader.
+     * @param reader A reader.
+     */
+    public JSONReader(Reader reader) {
+        this(new JSONTokener(reader), reader);
+    }
+
+
+    /**
+     * Construct a JSONReader from a source string.
+     * @param source A JSON text.
+     */
+    public JSONReader(String source) {
+        this(new JSONTokener(source), null);
+    }
+
+
+    private JSONReader(JSONTokener x, Reader reader) {
+        this.x = x;
+        this.reader = reader;
+        this.stack = new int[32];
+        this.stack[0] = EMPTY_DOCUMENT;
+        this.top = 0;
+        this.peeked = 0;
+    }
+
+
+    /**
+     * Consume a <code>[</code>.
+     * @throws JSONException If the next token is not the start of an array.
+     */
+    public void beginArray() throws JSONException {
+        this.expect(BEGIN_ARRAY, "Expected '['");
+        this.push(EMPTY_ARRAY);
+    }
+
+
+    /**
+     * Consume a <code>{</code>.
+     * @throws JSONException If the next token is not the start of an object.
+     */
+    public void beginObject() throws JSONException {
+        this.expect(BEGIN_OBJECT, "Expected '{'");
+        this.push(EMPTY_OBJECT);
+    }
+
+
+    /**
+     * Close the underlying reader, if this JSONReader was constructed from
+     * one.
+     * @throws JSONException If the reader could not be closed.
+     */
+    public void close() throws JSONException {
+        if (this.reader != null) {
+            try {
+                this.reader.close();
+            } catch (IOException exception) {
+                throw new JSONException(exception);
+            }
+        }
+    }
+
+
+    /**
+     * Consume a <code>]</code>.
+     * @throws JSONException If the next token is not the end of an array.
+     */
+    public void endArray() throws JSONException {
+        this.expect(END_ARRAY, "Expected ']'");
+        this.top -= 1;
+    }
+
+
+    /**
+     * Consume a <code>}</code>.
+     * @throws JSONException If the next token is not the end of an object.
+     */
+    public void endObject() throws JSONException {
+        this.expect(END_OBJECT, "Expected '}'");
+        this.top -= 1;
+    }
+
+
+    /**
+     * Determine if the current array or object has another element.
+     * @return true if the next token is not the end of an array, an object
+     *  or the text.
+     * @throws JSONException If there is a syntax error.
+     */
+    public boolean hasNext() throws JSONException {
+        int p = this.peek();
+        return p != END_ARRAY && p != END_OBJECT && p != END_DOCUMENT;
+    }
+
+
+    /**
+     * Consume the next value, which must be <code>true</code> or
+     * <code>false</code>.
+     * @return The truth.
+     * @throws JSONException If the next token is not a boolean.
+     */
+    public boolean nextBoolean() throws JSONException {
+        this.expect(BOOLEAN, "Expected a boolean");
+        return ((Boolean)this.literal).booleanValue();
+    }
+
+
+    /**
+     * Consume the next value as a double. Strings are converted if possible.
+     * @return The value.
+     * @throws JSONException If the next token is not a number.
+     */
+    public double nextDouble() throws JSONException {
+        Object object = this.nextNumber();
+        try {
+            return object instanceof Number
+                ? ((Number)object).doubleValue()
+                : Double.parseDouble((String)object);
+        } catch (Exception e) {
+            throw this.x.syntaxError("Expected a number");
+        }
+    }
+
+
+    /**
+     * Consume the next value as an int. Strings are converted if possible.
+     * @return The value.
+     * @throws JSONException If the next token is not a number.
+     */
+    public int nextInt() throws JSONException {
+        Object object = this.nextNumber();
+        try {
+            return object instanceof Number
+                ? ((Number)object).intValue()
+                : Integer.parseInt((String)object);
+        } catch (Exception e) {
+            throw this.x.syntaxError("Expected an int");
+        }
+    }
+
+
+    /**
+     * Consume the next value as a long. Strings are converted if possible.
+     * @return The value.
+     * @throws JSONException If the next token is not a number.
+     */
+    public long nextLong() throws JSONException {
+        Object object = this.nextNumber();
+        try {
+            return object instanceof Number
+                ? ((Number)object).longValue()
+                : Long.parseLong((String)object);
+        } catch (Exception e) {
+            throw this.x.syntaxError("Expected a long");
+        }
+    }
+
+
+    /**
+     * Consume the next key of the current object.
+     * @return The key.
+     * @throws JSONException If the next token is not a key.
+     */
+    public String nextName() throws JSONException {
+        this.expect(NAME, "Expected a key");
+        return this.quote != 0
+            ? this.x.nextString(this.quote)
+            : (String)this.literal;
+    }
+
+
+    /**
+     * Consume a <code>null</code>.
+     * @throws JSONException If the next token is not null.
+     */
+    public void nextNull() throws JSONException {
+        this.expect(NULL, "Expected null");
+    }
+
+
+    /**
+     * Consume the next value as a string. Numbers are returned as they
+     * appeared in the text.
+     * @return The string.
+     * @throws JSONException If the next token is not a string or a number.
+     */
+    public String nextString() throws JSONException {
+        int p = this.peek();
+        if (p == NUMBER) {
+            this.peeked = 0;
+            return this.text;
+        }
+        this.expect(STRING, "Expected a string");
+        return this.quote != 0
+            ? this.x.nextString(this.quote)
+            : (String)this.literal;
+    }
+
+
+    /**
+     * Consume the next value, which must be an object, and bind it to a new
+     * bean without building a JSONObject.
+     * @param binding The binding of the bean's class.
+     * @return The bean.
+     * @throws JSONException If the next token is not the start of an object,
+     *  or if the object does not fit the binding.
+     */
+    public Object nextObject(JSONBinding binding) throws JSONException {
+        if (this.peek() != BEGIN_OBJECT) {
+            throw this.x.syntaxError("Expected '{'");
+        }
+        this.peeked = 0;
+        this.x.back();
+        return binding.read(this.x);
+    }
+
+
+    /**
+     * Consume the next value, whatever it is. A JSONObject or JSONArray is
+     * built if the value is an object or an array.
+     * @return A Boolean, Double, Integer, JSONArray, JSONObject, Long, or
+     *  String, or the JSONObject.NULL object.
+     * @throws JSONException If the next token is not a value.
+     */
+    public Object nextValue() throws JSONException {
+        switch (this.peek()) {
+        case BEGIN_OBJECT:
+            this.peeked = 0;
+            this.x.back();
+            return new JSONObject(this.x);
+        case BEGIN_ARRAY:
+            this.peeked = 0;
+            this.x.back();
+            return new JSONArray(this.x);
+        case STRING:
+            return this.nextString();
+        case NUMBER:
+        case BOOLEAN:
+        case NULL:
+            this.peeked = 0;
+            return this.literal;
+        default:
+            throw this.x.syntaxError("Expected a value");
+        }
+    }
+
+
+    /**
+     * Get the type of the next token without consuming it.
+     * @return One of the token constants of this class.
+     * @throws JSONException If there is a syntax error.
+     */
+    public int peek() throws JSONException {
+        char c;
+        int scope;
+
+        if (this.peeked != 0) {
+            return this.peeked;
+        }
+        scope = this.stack[this.top];
+        switch (scope) {
+        case EMPTY_ARRAY:
+            this.stack[this.top] = NONEMPTY_ARRAY;
+            if (this.x.nextClean() == ']') {
+                return this.peeked = END_ARRAY;
+            }
+            this.x.back();
+            return this.peekElement();
+        case NONEMPTY_ARRAY:
+
+// Elements are separated by ','. We will also tolerate ';'.
+
+            switch (this.x.nextClean()) {
+            case ';':
+            case ',':
+                if (this.x.nextClean() == ']') {
+                    return this.peeked = END_ARRAY;
+                }
+                this.x.back();
+                return this.peekElement();
+            case ']':
+                return this.peeked = END_ARRAY;
+            default:
+                throw this.x.syntaxError("Expected a ',' or ']'");
+            }
+        case EMPTY_OBJECT:
+        case NONEMPTY_OBJECT:
+            c = this.x.nextClean();
+            if (scope == NONEMPTY_OBJECT) {
+
+// Pairs are separated by ','. We will also tolerate ';'.
+
+                if (c == ',' || c == ';') {
+                    c = this.x.nextClean();
+                } else if (c != '}') {
+                    throw this.x.syntaxError("Expected a ',' or '}'");
+                }
+            }
+            switch (c) {
+            case 0:
+                throw this.x.syntaxError("A JSONObject text must end with '}'");
+            case '}':
+                return this.peeked = END_OBJECT;
+            case '"':
+            case '\'':
+                this.quote = c;
+                break;
+            default:
+                this.x.back();
+                this.quote = 0;
+                this.literal = JSONObject.stringToValue(this.nextUnquoted())
+                        .toString();
+            }
+            this.stack[this.top] = DANGLING_NAME;
+            return this.peeked = NAME;
+        case DANGLING_NAME:
+
+// The key is followed by ':'. We will also tolerate '=' or '=>'.
+
+            c = this.x.nextClean();
+            if (c == '=') {
+                if (this.x.next() != '>') {
+                    this.x.back();
+                }
+            } else if (c != ':') {
+                throw this.x.syntaxError("Expected a ':' after a key");
+            }
+            this.stack[this.top] = NONEMPTY_OBJECT;
+            return this.peekValue(this.x.nextClean());
+        case EMPTY_DOCUMENT:
+            this.stack[this.top] = NONEMPTY_DOCUMENT;
+            return this.peekValue(this.x.nextClean());
+        default:
+            if (this.x.nextClean() != 0) {
+                throw this.x.syntaxError("Expected the end of the text");
+            }
+            return this.peeked = END_DOCUMENT;
+        }
+    }
+
+
+    /**
+     * Skip the next value. If it is an array or an object, all of its
+     * contents are skipped without being built. If the next token is a key,
+     * the key is skipped.
+     * @throws JSONException If there is a syntax error or no value.
+     */
+    public void skipValue() throws JSONException {
+        int count = 0;
+        do {
+            switch (this.peek()) {
+            case BEGIN_ARRAY:
+                this.beginArray();
+                count += 1;
+                break;
+            case BEGIN_OBJECT:
+                this.beginObject();
+                count += 1;
+                break;
+            case END_ARRAY:
+            case END_OBJECT:
+                if (count == 0) {
+                    throw this.x.syntaxError("Expected a value");
+                }
+                this.top -= 1;
+                this.peeked = 0;
+                count -= 1;
+                break;
+            case END_DOCUMENT:
+                throw this.x.syntaxError("Expected a value");
+            case NAME:
+            case STRING:
+                if (this.quote != 0) {
+                    this.skipString(this.quote);
+                }
+                this.peeked = 0;
+                break;
+            default:
+                this.peeked = 0;
+            }
+        } while (count > 0);
+    }
+
+
+    /**
+     * Make a printable string of this JSONReader.
+     *
+     * @return " at {index} [character {character} line {line}]"
+     */
+    public String toString() {
+        return this.x.toString();
+    }
+
+
+    private void expect(int token, String message) throws JSONException {
+        if (this.peek() != token) {
+            throw this.x.syntaxError(message);
+        }
+        this.peeked = 0;
+    }
+
+
+    /**
+     * Consume the next value as a Number, or a String that might be one.
+     */
+    private Object nextNumber() throws JSONException {
+        int p = this.peek();
+        if (p == NUMBER) {
+            this.peeked = 0;
+            return this.literal;
+        }
+        if (p == STRING) {
+            return this.nextString();
+        }
+        throw this.x.syntaxError("Expected a number");
+    }
+
+
+    /**
+     * Accumulate an unquoted token, like JSONTokener.nextValue.
+     */
+    private String nextUnquoted() throws JSONException {
+        StringBuilder sb = new StringBuilder();
+        char c = this.x.next();
+        while (c >= ' ' && ",:]}/\\\"[{;=#".indexOf(c) < 0) {
+            sb.append(c);
+            c = this.x.next();
+        }
+        this.x.back();
+
+        String string = sb.toString().trim();
+        if ("".equals(string)) {
+            throw this.x.syntaxError("Missing value");
+        }
+        return string;
+    }
+
+
+    /**
+     * Peek an array element. An elided element is null.
+     */
+    private int peekElement() throws JSONException {
+        char c = this.x.nextClean();
+        if (c == ',') {
+            this.x.back();
+            this.literal = JSONObject.NULL;
+            return this.peeked = NULL;
+        }
+        return this.peekValue(c);
+    }
+
+
+    /**
+     * Peek a value, given its first character.
+     */
+    private int peekValue(char c) throws JSONException {
+        switch (c) {
+        case '"':
+        case '\'':
+            this.quote = c;
+            return this.peeked = STRING;
+        case '{':
+            return this.peeked = BEGIN_OBJECT;
+        case '[':
+            return this.peeked = BEGIN_ARRAY;
+        }
+        this.x.back();
+        this.quote = 0;
+        this.text = this.nextUnquoted();
+        this.literal = JSONObject.stringToValue(this.text);
+        if (this.literal instanceof Number) {
+            return this.peeked = NUMBER;
+        }
+        if (this.literal instanceof Boolean) {
+            return this.peeked = BOOLEAN;
+        }
+        if (this.literal == JSONObject.NULL) {
+            return this.peeked = NULL;
+        }
+        return this.peeked = STRING;
+    }
+
+
+    private void push(int scope) {
+        this.top += 1;
+        if (this.top == this.stack.length) {
+            int[] newStack = new int[this.stack.length * 2];
+            System.arraycopy(this.stack, 0, newStack, 0, this.stack.length);
+            this.stack = newStack;
+        }
+        this.stack[this.top] = scope;
+    }
+
+
+    /**
+     * Skip the characters up to the next close quote character, without
+     * building a string.
+     */
+    private void skipString(char quote) throws JSONException {
+        for (;;) {
+            char c = this.x.next();
+            switch (c) {
+            case 0:
+            case '\n':
+            case '\r':
+                throw this.x.syntaxError("Unterminated string");
+            case '\\':
+                this.x.next();
+                break;
+            default:
+                if (c == quote) {
+                    return;
+                }
+            }
+        }
+    }
+}
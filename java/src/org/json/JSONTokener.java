@@ -43,7 +43,10 @@ public class JSONTokener {
     private long    character;
     private boolean eof;
     private long    index;
+    private StringBuilder keyBuffer;
     private long    line;
+    int             maxDepth;
+    JSONPool        pool;
     private char    previous;
     private Reader  reader;
     private boolean usePrevious;
@@ -67,6 +70,21 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Construct a JSONTokener without a Reader, for subclasses that read
+     * their source themselves.
+     */
+    JSONTokener() {
+        this.reader = null;
+        this.eof = false;
+        this.usePrevious = false;
+        this.previous = 0;
+        this.index = 0;
+        this.character = 1;
+        this.line = 1;
+    }
+
+
     /**
      * Construct a JSONTokener from an InputStream.
      */
@@ -249,8 +267,21 @@ public class JSONTokener {
      * @throws JSONException Unterminated string.
      */
     public String nextString(char quote) throws JSONException {
+        StringBuilder sb = new StringBuilder();
+        this.nextString(quote, sb);
+        return sb.toString();
+    }
+
+
+    /**
+     * Append the characters up to the next close quote character to a
+     * StringBuilder. Backslash processing is done.
+     * @param quote The quoting character.
+     * @param sb    The StringBuilder.
+     * @throws JSONException Unterminated string.
+     */
+    void nextString(char quote, StringBuilder sb) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
         for (;;) {
             c = this.next();
             switch (c) {
@@ -291,7 +322,7 @@ public class JSONTokener {
                 break;
             default:
                 if (c == quote) {
-                    return sb.toString();
+                    return;
                 }
                 sb.append(c);
             }
@@ -299,6 +330,27 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Get the next key of an object. Quoted keys are looked up in the
+     * JSONKeyCache, so that repeated keys share a single String.
+     * @return The key.
+     * @throws JSONException If there is a syntax error.
+     */
+    String nextKey() throws JSONException {
+        char c = this.nextClean();
+        if (c == '"' || c == '\'') {
+            if (this.keyBuffer == null) {
+                this.keyBuffer = new StringBuilder();
+            }
+            this.keyBuffer.setLength(0);
+            this.nextString(c, this.keyBuffer);
+            return JSONKeyCache.intern(this.keyBuffer);
+        }
+        this.back();
+        return this.nextValue().toString();
+    }
+
+
     /**
      * Get the text up but not including the specified character or the
      * end of line, whichever comes first.
@@ -306,7 +358,7 @@ public class JSONTokener {
      * @return   A string.
      */
     public String nextTo(char delimiter) throws JSONException {
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (;;) {
             char c = this.next();
             if (c == delimiter || c == 0 || c == '\n' || c == '\r') {
@@ -328,7 +380,7 @@ public class JSONTokener {
      */
     public String nextTo(String delimiters) throws JSONException {
         char c;
-        StringBuffer sb = new StringBuffer();
+        StringBuilder sb = new StringBuilder();
         for (;;) {
             c = this.next();
             if (delimiters.indexOf(c) >= 0 || c == 0 ||
@@ -360,10 +412,14 @@ public class JSONTokener {
                 return this.nextString(c);
             case '{':
                 this.back();
-                return new JSONObject(this);
+                return this.pool == null
+                    ? new JSONObject(this)
+                    : this.pool.object(this);
             case '[':
                 this.back();
-                return new JSONArray(this);
+                return this.pool == null
+                    ? new JSONArray(this)
+                    : this.pool.array(this);
         }
 
         /*
@@ -390,6 +446,23 @@ public class JSONTokener {
     }
 
 
+    /**
+     * Parse objects and arrays without recursion, keeping the open ones on
+     * an explicit stack, and refuse to nest them deeper than a limit. A
+     * crafted text of deeply nested brackets then fails with a JSONException
+     * instead of a StackOverflowError, which matters most on threads with
+     * small stacks. The trees built are the same.
+     * @param maxDepth The most objects and arrays that may be open at once,
+     *  or 0 to parse recursively and without a limit, which is the default.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("maxDepth: " + maxDepth);
+        }
+        this.maxDepth = maxDepth;
+    }
+
+
     /**
      * Skip characters until the next character is the requested character.
      * If the requested character is not found, no characters are skipped.
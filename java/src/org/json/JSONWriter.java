@@ -53,6 +53,8 @@ SOFTWARE.
  * you. Objects and arrays can be nested up to 20 levels deep.
  * <p>
  * This can sometimes be easier than using a JSONObject to build a string.
+ * Given a JSONByteSink, a JSONWriter produces UTF-8 bytes directly, with no
+ * intermediate string.
  * @author JSON.org
  * @version 2011-11-24
  */
@@ -300,7 +302,10 @@ public class JSONWriter {
      * @throws JSONException If the number is not finite.
      */
     public JSONWriter value(double d) throws JSONException {
-        return this.value(new Double(d));
+        if (Double.isInfinite(d) || Double.isNaN(d)) {
+            throw new JSONException("JSON does not allow non-finite numbers.");
+        }
+        return this.append(JSONDouble.toString(d));
     }
 
     /**
@@ -0,0 +1,648 @@
+package org.json;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * This provides static methods to convert a JSONObject or JSONArray into
+ * MessagePack, a binary form of JSON, and to convert MessagePack back into a
+ * JSONObject or JSONArray. The binary form is smaller than JSON text, since
+ * lengths take the place of quotes and delimiters and numbers are written in
+ * as few bytes as they need, and it is cheaper to read and write, since
+ * nothing has to be escaped or scanned for.
+ * <p>
+ * Values are written as follows: a JSONObject is a map and a JSONArray an
+ * array, a String or Character is a UTF-8 string, a Boolean a boolean,
+ * JSONObject.NULL is nil, an integral number is the smallest integer that
+ * holds it, and any other number is a float, 32 bits wide if that is exact.
+ * A Float is taken at the value of its decimal digits, as it is written in
+ * JSON text. A bean is a map of its properties, found by its JSONBinding.
+ * Other objects are first wrapped as JSONObject.wrap does.
+ * <p>
+ * Reading gives the same values the JSON text would: integers come back as
+ * Integer, or Long if they need it, and floats as Double. Map keys that are
+ * not strings are converted to strings. Binary and extension types have no
+ * JSON equivalent and are refused.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public class MessagePack {
+
+    /**
+     * Containers nested deeper than this are refused when reading, so that
+     * hostile input can not exhaust the stack.
+     */
+    private static final int MAX_DEPTH = 1000;
+
+    /**
+     * The bytes written, or the bytes being read.
+     */
+    private byte[] bytes;
+
+    /**
+     * The number of bytes written, or the index of the next byte to read.
+     */
+    private int index;
+
+    /**
+     * The index after the last byte to read.
+     */
+    private int end;
+
+
+    private MessagePack(byte[] bytes, int index, int end) {
+        this.bytes = bytes;
+        this.index = index;
+        this.end = end;
+    }
+
+
+    /**
+     * Make sure that there is room to write more bytes.
+     */
+    private void ensure(int length) {
+        if (this.index + length > this.bytes.length) {
+            byte[] newBytes = new byte[Math.max(this.bytes.length * 2,
+                    this.index + length)];
+            System.arraycopy(this.bytes, 0, newBytes, 0, this.index);
+            this.bytes = newBytes;
+        }
+    }
+
+
+    /**
+     * Get the next byte, as an unsigned int.
+     */
+    private int next() throws JSONException {
+        if (this.index >= this.end) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+        int b = this.bytes[this.index] & 0xff;
+        this.index += 1;
+        return b;
+    }
+
+
+    /**
+     * Get the next length bytes as a big-endian number.
+     */
+    private long next(int length) throws JSONException {
+        if (this.index + length > this.end) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+        long n = 0;
+        for (int i = 0; i < length; i += 1) {
+            n = (n << 8) | (this.bytes[this.index + i] & 0xff);
+        }
+        this.index += length;
+        return n;
+    }
+
+
+    /**
+     * Get the next length bytes as the length of a string or container.
+     */
+    private int nextLength(int length) throws JSONException {
+        long n = this.next(length);
+        if (n > this.end - this.index) {
+            throw this.syntaxError("Length " + n + " exceeds the input");
+        }
+        return (int)n;
+    }
+
+
+    /**
+     * Read a string of length bytes.
+     */
+    private String nextString(int length, boolean key)
+            throws JSONException {
+        if (length > this.end - this.index) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+        String string = key
+            ? JSONKeyCache.intern(this.bytes, this.index, length)
+            : new String(this.bytes, this.index, length,
+                    JSONByteTokener.UTF8);
+        this.index += length;
+        return string;
+    }
+
+
+    /**
+     * Read the next value.
+     * @param depth The number of containers open around it.
+     */
+    private Object nextValue(int depth) throws JSONException {
+        int b = this.next();
+        if (b <= 0x7f) {
+            return Integer.valueOf(b);
+        }
+        if (b >= 0xe0) {
+            return Integer.valueOf((byte)b);
+        }
+        if (b <= 0x8f) {
+            return this.nextObject(b & 0x0f, depth);
+        }
+        if (b <= 0x9f) {
+            return this.nextArray(b & 0x0f, depth);
+        }
+        if (b <= 0xbf) {
+            return this.nextString(b & 0x1f, false);
+        }
+        switch (b) {
+        case 0xc0:
+            return JSONObject.NULL;
+        case 0xc2:
+            return Boolean.FALSE;
+        case 0xc3:
+            return Boolean.TRUE;
+        case 0xca:
+            return Double.valueOf(Float.intBitsToFloat((int)this.next(4)));
+        case 0xcb:
+            return Double.valueOf(Double.longBitsToDouble(this.next(8)));
+        case 0xcc:
+            return Integer.valueOf((int)this.next(1));
+        case 0xcd:
+            return Integer.valueOf((int)this.next(2));
+        case 0xce:
+            return integer(this.next(4));
+        case 0xcf:
+            long n = this.next(8);
+            if (n < 0) {
+                return Double.valueOf(Long.toUnsignedString(n));
+            }
+            return integer(n);
+        case 0xd0:
+            return Integer.valueOf((byte)this.next(1));
+        case 0xd1:
+            return Integer.valueOf((short)this.next(2));
+        case 0xd2:
+            return Integer.valueOf((int)this.next(4));
+        case 0xd3:
+            return integer(this.next(8));
+        case 0xd9:
+            return this.nextString(this.nextLength(1), false);
+        case 0xda:
+            return this.nextString(this.nextLength(2), false);
+        case 0xdb:
+            return this.nextString(this.nextLength(4), false);
+        case 0xdc:
+            return this.nextArray(this.nextLength(2), depth);
+        case 0xdd:
+            return this.nextArray(this.nextLength(4), depth);
+        case 0xde:
+            return this.nextObject(this.nextLength(2), depth);
+        case 0xdf:
+            return this.nextObject(this.nextLength(4), depth);
+        }
+        this.index -= 1;
+        throw this.syntaxError("Unsupported type 0x" +
+                Integer.toHexString(b));
+    }
+
+
+    /**
+     * Read the elements of an array. Each takes at least a byte, so a count
+     * that exceeds the input is refused before anything is allocated.
+     */
+    private JSONArray nextArray(int count, int depth) throws JSONException {
+        if (depth >= MAX_DEPTH) {
+            throw this.syntaxError("Nesting deeper than " + MAX_DEPTH);
+        }
+        if (count > this.end - this.index) {
+            throw this.syntaxError("Length " + count + " exceeds the input");
+        }
+        JSONArray ja = new JSONArray();
+        for (int i = 0; i < count; i += 1) {
+            ja.put(this.nextValue(depth + 1));
+        }
+        return ja;
+    }
+
+
+    /**
+     * Read the pairs of a map.
+     */
+    private JSONObject nextObject(int count, int depth) throws JSONException {
+        if (depth >= MAX_DEPTH) {
+            throw this.syntaxError("Nesting deeper than " + MAX_DEPTH);
+        }
+        if (count > (this.end - this.index) / 2) {
+            throw this.syntaxError("Length " + count + " exceeds the input");
+        }
+        JSONObject jo = new JSONObject();
+        for (int i = 0; i < count; i += 1) {
+            String key;
+            int b = this.index < this.end ? this.bytes[this.index] & 0xff : 0;
+            if (b >= 0xa0 && b <= 0xbf) {
+                this.index += 1;
+                key = this.nextString(b & 0x1f, true);
+            } else if (b == 0xd9) {
+                this.index += 1;
+                key = this.nextString(this.nextLength(1), true);
+            } else {
+                key = this.nextValue(depth + 1).toString();
+            }
+            jo.putOnce(key, this.nextValue(depth + 1));
+        }
+        return jo;
+    }
+
+
+    /**
+     * Make a JSONException to signal a syntax error.
+     */
+    private JSONException syntaxError(String message) {
+        return new JSONException(message + " at " + this.index);
+    }
+
+
+    /**
+     * Convert a MessagePack value into a JSONArray.
+     * @param bytes The MessagePack bytes.
+     * @return A JSONArray.
+     * @throws JSONException If the bytes are not a single MessagePack array.
+     */
+    public static JSONArray toJSONArray(byte[] bytes) throws JSONException {
+        return toJSONArray(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Convert a MessagePack value into a JSONArray.
+     * @param bytes  The source.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     * @return A JSONArray.
+     * @throws JSONException If the bytes are not a single MessagePack array.
+     */
+    public static JSONArray toJSONArray(byte[] bytes, int offset, int length)
+            throws JSONException {
+        Object value = toValue(bytes, offset, length);
+        if (!(value instanceof JSONArray)) {
+            throw new JSONException("A MessagePack value is not an array.");
+        }
+        return (JSONArray)value;
+    }
+
+
+    /**
+     * Convert a MessagePack value into a JSONObject.
+     * @param bytes The MessagePack bytes.
+     * @return A JSONObject.
+     * @throws JSONException If the bytes are not a single MessagePack map.
+     */
+    public static JSONObject toJSONObject(byte[] bytes) throws JSONException {
+        return toJSONObject(bytes, 0, bytes.length);
+    }
+
+
+    /**
+     * Convert a MessagePack value into a JSONObject.
+     * @param bytes  The source.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     * @return A JSONObject.
+     * @throws JSONException If the bytes are not a single MessagePack map.
+     */
+    public static JSONObject toJSONObject(byte[] bytes, int offset,
+            int length) throws JSONException {
+        Object value = toValue(bytes, offset, length);
+        if (!(value instanceof JSONObject)) {
+            throw new JSONException("A MessagePack value is not a map.");
+        }
+        return (JSONObject)value;
+    }
+
+
+    /**
+     * Convert a MessagePack value into a JSON value.
+     * @param bytes  The source.
+     * @param offset The index of the first byte.
+     * @param length The number of bytes.
+     * @return A Boolean, Double, Integer, JSONArray, JSONObject, Long, or
+     *  String, or the JSONObject.NULL object.
+     * @throws JSONException If the bytes are not a single MessagePack value
+     *  that JSON can represent.
+     */
+    public static Object toValue(byte[] bytes, int offset, int length)
+            throws JSONException {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        MessagePack reader = new MessagePack(bytes, offset, offset + length);
+        Object value = reader.nextValue(0);
+        if (reader.index != reader.end) {
+            throw reader.syntaxError("Unexpected bytes after a value");
+        }
+        return value;
+    }
+
+
+    /**
+     * Convert a JSONObject, JSONArray or other value into MessagePack.
+     * @param value The value.
+     * @return The MessagePack bytes.
+     * @throws JSONException If the value is or contains a non-finite number,
+     *  or an object that can not be wrapped.
+     */
+    public static byte[] toBytes(Object value) throws JSONException {
+        MessagePack writer = new MessagePack(new byte[256], 0, 0);
+        writer.write(value);
+        byte[] bytes = new byte[writer.index];
+        System.arraycopy(writer.bytes, 0, bytes, 0, writer.index);
+        return bytes;
+    }
+
+
+    /**
+     * Box an integer read from the input as an Integer if it fits.
+     */
+    private static Object integer(long n) {
+        return n == (int)n ? (Object)Integer.valueOf((int)n) : Long.valueOf(n);
+    }
+
+
+    /**
+     * Write a value.
+     */
+    private void write(Object value) throws JSONException {
+        if (value == null || JSONObject.NULL.equals(value)) {
+            this.write1(0xc0);
+        } else if (value instanceof String) {
+            this.writeString((String)value);
+        } else if (value instanceof JSONObject) {
+            JSONObject jo = (JSONObject)value;
+            this.writeHeader(jo.length(), 0x80, 0xde);
+            Iterator keys = jo.keys();
+            while (keys.hasNext()) {
+                Object key = keys.next();
+                this.writeString(key.toString());
+                this.write(jo.opt(key.toString()));
+            }
+        } else if (value instanceof JSONArray) {
+            JSONArray ja = (JSONArray)value;
+            int length = ja.length();
+            this.writeHeader(length, 0x90, 0xdc);
+            for (int i = 0; i < length; i += 1) {
+                this.write(ja.opt(i));
+            }
+        } else if (value instanceof Boolean) {
+            this.write1(((Boolean)value).booleanValue() ? 0xc3 : 0xc2);
+        } else if (value instanceof Integer || value instanceof Long ||
+                value instanceof Short || value instanceof Byte) {
+            this.writeLong(((Number)value).longValue());
+        } else if (value instanceof Float) {
+
+// Take a Float at the value of its digits, as JSON text carries it, so that
+// 0.1f reads back as 0.1 and not as the binary value of the float.
+
+            JSONObject.testValidity(value);
+            this.writeDouble(Double.parseDouble(value.toString()));
+        } else if (value instanceof Double) {
+            JSONObject.testValidity(value);
+            this.writeDouble(((Double)value).doubleValue());
+        } else if (value instanceof BigInteger &&
+                ((BigInteger)value).bitLength() < 64) {
+            this.writeLong(((BigInteger)value).longValue());
+        } else if (value instanceof Number) {
+            if (value instanceof BigDecimal) {
+                try {
+                    this.writeLong(((BigDecimal)value).longValueExact());
+                    return;
+                } catch (ArithmeticException notIntegral) {
+                }
+            }
+            Double d = Double.valueOf(((Number)value).doubleValue());
+            JSONObject.testValidity(d);
+            this.writeDouble(d.doubleValue());
+        } else if (value instanceof Character) {
+            this.writeString(value.toString());
+        } else if (value instanceof JSONString) {
+            String string;
+            try {
+                string = ((JSONString)value).toJSONString();
+            } catch (Exception e) {
+                throw new JSONException(e);
+            }
+            this.write(new JSONTokener(string).nextValue());
+        } else if (JSONBinding.isBean(value)) {
+            JSONMap map = new JSONMap();
+            JSONBinding.forClass(value.getClass()).populate(value, map);
+            this.writeHeader(map.size(), 0x80, 0xde);
+            Iterator keys = map.keys();
+            while (keys.hasNext()) {
+                Object key = keys.next();
+                this.writeString(key.toString());
+                this.write(map.get(key));
+            }
+        } else {
+            Object wrapped = JSONObject.wrap(value);
+            if (wrapped == null) {
+                throw new JSONException("Can not wrap " +
+                        value.getClass().getName());
+            }
+            this.write(wrapped);
+        }
+    }
+
+
+    private void write1(int b) {
+        this.ensure(1);
+        this.bytes[this.index] = (byte)b;
+        this.index += 1;
+    }
+
+
+    /**
+     * Write the low length bytes of a number, big-endian. There must be room.
+     */
+    private void writeBits(long n, int length) {
+        for (int i = length - 1; i >= 0; i -= 1) {
+            this.bytes[this.index] = (byte)(n >>> (i * 8));
+            this.index += 1;
+        }
+    }
+
+
+    /**
+     * Write a double, as a 32 bit float if that is exact.
+     */
+    private void writeDouble(double d) {
+        float f = (float)d;
+        this.ensure(9);
+        if (f == d) {
+            this.write1(0xca);
+            this.writeBits(Float.floatToIntBits(f), 4);
+        } else {
+            this.write1(0xcb);
+            this.writeBits(Double.doubleToLongBits(d), 8);
+        }
+    }
+
+
+    /**
+     * Write the header of a map or array.
+     * @param fix The type of a map or array of up to 15.
+     * @param big The type of a map or array of up to 65535.
+     */
+    private void writeHeader(int length, int fix, int big) {
+        this.ensure(5);
+        if (length <= 15) {
+            this.write1(fix | length);
+        } else if (length <= 0xffff) {
+            this.write1(big);
+            this.writeBits(length, 2);
+        } else {
+            this.write1(big + 1);
+            this.writeBits(length, 4);
+        }
+    }
+
+
+    /**
+     * Write an integer in as few bytes as hold it.
+     */
+    private void writeLong(long n) {
+        this.ensure(9);
+        if (n >= 0) {
+            if (n <= 0x7f) {
+                this.write1((int)n);
+            } else if (n <= 0xff) {
+                this.write1(0xcc);
+                this.writeBits(n, 1);
+            } else if (n <= 0xffff) {
+                this.write1(0xcd);
+                this.writeBits(n, 2);
+            } else if (n <= 0xffffffffL) {
+                this.write1(0xce);
+                this.writeBits(n, 4);
+            } else {
+                this.write1(0xcf);
+                this.writeBits(n, 8);
+            }
+        } else if (n >= -32) {
+            this.write1((int)n & 0xff);
+        } else if (n >= Byte.MIN_VALUE) {
+            this.write1(0xd0);
+            this.writeBits(n, 1);
+        } else if (n >= Short.MIN_VALUE) {
+            this.write1(0xd1);
+            this.writeBits(n, 2);
+        } else if (n >= Integer.MIN_VALUE) {
+            this.write1(0xd2);
+            this.writeBits(n, 4);
+        } else {
+            this.write1(0xd3);
+            this.writeBits(n, 8);
+        }
+    }
+
+
+    /**
+     * Write a string as UTF-8, encoding it straight into the buffer. As with
+     * String.getBytes, an unpaired surrogate is written as '?'.
+     */
+    private void writeString(String string) {
+        int length = string.length();
+        int size = 0;
+        boolean ascii = true;
+        for (int i = 0; i < length; i += 1) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                size += 1;
+                continue;
+            }
+            ascii = false;
+            if (c < 0x800) {
+                size += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(string.charAt(i + 1))) {
+                size += 4;
+                i += 1;
+            } else if (Character.isSurrogate(c)) {
+                size += 1;
+            } else {
+                size += 3;
+            }
+        }
+
+        this.ensure(5 + size);
+        if (size <= 31) {
+            this.write1(0xa0 | size);
+        } else if (size <= 0xff) {
+            this.write1(0xd9);
+            this.writeBits(size, 1);
+        } else if (size <= 0xffff) {
+            this.write1(0xda);
+            this.writeBits(size, 2);
+        } else {
+            this.write1(0xdb);
+            this.writeBits(size, 4);
+        }
+
+        byte[] b = this.bytes;
+        int j = this.index;
+        if (ascii) {
+            for (int i = 0; i < length; i += 1) {
+                b[j + i] = (byte)string.charAt(i);
+            }
+            this.index = j + length;
+            return;
+        }
+        for (int i = 0; i < length; i += 1) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                b[j] = (byte)c;
+                j += 1;
+            } else if (c < 0x800) {
+                b[j] = (byte)(0xc0 | (c >> 6));
+                b[j + 1] = (byte)(0x80 | (c & 0x3f));
+                j += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length &&
+                    Character.isLowSurrogate(string.charAt(i + 1))) {
+                int code = Character.toCodePoint(c, string.charAt(i + 1));
+                b[j] = (byte)(0xf0 | (code >> 18));
+                b[j + 1] = (byte)(0x80 | ((code >> 12) & 0x3f));
+                b[j + 2] = (byte)(0x80 | ((code >> 6) & 0x3f));
+                b[j + 3] = (byte)(0x80 | (code & 0x3f));
+                j += 4;
+                i += 1;
+            } else if (Character.isSurrogate(c)) {
+                b[j] = (byte)'?';
+                j += 1;
+            } else {
+                b[j] = (byte)(0xe0 | (c >> 12));
+                b[j + 1] = (byte)(0x80 | ((c >> 6) & 0x3f));
+                b[j + 2] = (byte)(0x80 | (c & 0x3f));
+                j += 3;
+            }
+        }
+        this.index = j;
+    }
+}
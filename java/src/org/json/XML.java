@@ -129,12 +129,25 @@ public class XML {
      */
     private static boolean parse(XMLTokener x, JSONObject context,
                                  String name) throws JSONException {
+        return parse(x, context, name, x.nextToken());
+    }
+
+
+    /**
+     * Scan the content following the named tag, attaching it to the context,
+     * when the first token after the '<' has already been read.
+     * @param x       The XMLTokener containing the source.
+     * @param context The JSONObject that will include the new material.
+     * @param name    The tag name.
+     * @param token   The token after the '<'.
+     * @return true if the close tag is processed.
+     * @throws JSONException
+     */
+    static boolean parse(XMLTokener x, JSONObject context, String name,
+                         Object token) throws JSONException {
         char       c;
         int        i;
-        JSONObject jsonobject = null;
         String     string;
-        String     tagName;
-        Object     token;
 
 // Test for and skip past these forms:
 //      <!-- ... -->
@@ -146,8 +159,6 @@ public class XML {
 //      <=
 //      <<
 
-        token = x.nextToken();
-
 // <!
 
         if (token == BANG) {
@@ -211,81 +222,97 @@ public class XML {
 // Open tag <
 
         } else {
-            tagName = (String)token;
-            token = null;
-            jsonobject = new JSONObject();
-            for (;;) {
-                if (token == null) {
-                    token = x.nextToken();
-                }
+            parseElement(x, context, (String)token);
+            return false;
+        }
+    }
+
+
+    /**
+     * Scan the attributes and content of an element whose open tag name has
+     * just been read, attaching it to the context.
+     * @param x       The XMLTokener containing the source.
+     * @param context The JSONObject that will include the element.
+     * @param tagName The tag name.
+     * @throws JSONException
+     */
+    static void parseElement(XMLTokener x, JSONObject context,
+                             String tagName) throws JSONException {
+        JSONObject jsonobject = new JSONObject();
+        String     string;
+        Object     token = null;
+
+        for (;;) {
+            if (token == null) {
+                token = x.nextToken();
+            }
 
 // attribute = value
 
-                if (token instanceof String) {
-                    string = (String)token;
+            if (token instanceof String) {
+                string = (String)token;
+                token = x.nextToken();
+                if (token == EQ) {
                     token = x.nextToken();
-                    if (token == EQ) {
-                        token = x.nextToken();
-                        if (!(token instanceof String)) {
-                            throw x.syntaxError("Missing value");
-                        }
-                        jsonobject.accumulate(string, 
-                                XML.stringToValue((String)token));
-                        token = null;
-                    } else {
-                        jsonobject.accumulate(string, "");
+                    if (!(token instanceof String)) {
+                        throw x.syntaxError("Missing value");
                     }
+                    jsonobject.accumulate(string, 
+                            XML.stringToValue((String)token));
+                    token = null;
+                } else {
+                    jsonobject.accumulate(string, "");
+                }
 
 // Empty tag <.../>
 
-                } else if (token == SLASH) {
-                    if (x.nextToken() != GT) {
-                        throw x.syntaxError("Misshaped tag");
-                    }
-                    if (jsonobject.length() > 0) {
-                        context.accumulate(tagName, jsonobject);
-                    } else {
-                        context.accumulate(tagName, "");
-                    }
-                    return false;
+            } else if (token == SLASH) {
+                if (x.nextToken() != GT) {
+                    throw x.syntaxError("Misshaped tag");
+                }
+                if (jsonobject.length() > 0) {
+                    context.accumulate(tagName, jsonobject);
+                } else {
+                    context.accumulate(tagName, "");
+                }
+                return;
 
 // Content, between <...> and </...>
 
-                } else if (token == GT) {
-                    for (;;) {
-                        token = x.nextContent();
-                        if (token == null) {
-                            if (tagName != null) {
-                                throw x.syntaxError("Unclosed tag " + tagName);
-                            }
-                            return false;
-                        } else if (token instanceof String) {
-                            string = (String)token;
-                            if (string.length() > 0) {
-                                jsonobject.accumulate("content", 
-                                        XML.stringToValue(string));
-                            }
+            } else if (token == GT) {
+                for (;;) {
+                    token = x.nextContent();
+                    if (token == null) {
+                        if (tagName != null) {
+                            throw x.syntaxError("Unclosed tag " + tagName);
+                        }
+                        return;
+                    } else if (token instanceof String) {
+                        string = (String)token;
+                        if (string.length() > 0) {
+                            jsonobject.accumulate("content", 
+                                    XML.stringToValue(string));
+                        }
 
 // Nested element
 
-                        } else if (token == LT) {
-                            if (parse(x, jsonobject, tagName)) {
-                                if (jsonobject.length() == 0) {
-                                    context.accumulate(tagName, "");
-                                } else if (jsonobject.length() == 1 &&
-                                       jsonobject.opt("content") != null) {
-                                    context.accumulate(tagName, 
-                                            jsonobject.opt("content"));
-                                } else {
-                                    context.accumulate(tagName, jsonobject);
-                                }
-                                return false;
+                    } else if (token == LT) {
+                        if (parse(x, jsonobject, tagName)) {
+                            if (jsonobject.length() == 0) {
+                                context.accumulate(tagName, "");
+                            } else if (jsonobject.length() == 1 &&
+                                   jsonobject.opt("content") != null) {
+                                context.accumulate(tagName, 
+                                        jsonobject.opt("content"));
+                            } else {
+                                context.accumulate(tagName, jsonobject);
                             }
+                            return;
                         }
                     }
-                } else {
-                    throw x.syntaxError("Misshaped tag");
                 }
+            } else {
+                throw x.syntaxError("Misshaped tag");
             }
         }
     }
@@ -0,0 +1,111 @@
+package org.json;
+
+import java.io.Reader;
+
+/*
+Copyright (c) 2002 JSON.org
+
+Permission is hereby granted, free of charge, to any person obtaining a copy
+of this software and associated documentation files (the "Software"), to deal
+in the Software without restriction, including without limitation the rights
+to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+copies of the Software, and to permit persons to whom the Software is
+furnished to do so, subject to the following conditions:
+
+The above copyright notice and this permission notice shall be included in all
+copies or substantial portions of the Software.
+
+The Software shall be used for Good, not Evil.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+SOFTWARE.
+*/
+
+/**
+ * An XMLStream converts a large XML document to JSON one element at a time,
+ * reading it from a Reader as it goes. The elements of a given name, such as
+ * the repeating <code>item</code> of a feed, are converted as each one
+ * closes, and everything around them is skipped. So only one element is in
+ * memory at a time, however long the document.
+ * <pre>
+ * XMLStream stream = new XMLStream(reader, "item");
+ * JSONObject item;
+ * while ((item = stream.next()) != null) {
+ *     ...
+ * }
+ * </pre>
+ * Each element is converted exactly as XML.toJSONObject would convert a
+ * document of that element alone: <code>&lt;item id="1">&lt;a>x&lt;/a>&lt;/item></code>
+ * gives <code>{"item":{"id":1,"a":"x"}}</code>. An element of the name that
+ * is nested in another one is part of the outer one. Like XML.toJSONObject,
+ * an XMLStream accepts XML that is well-formed but not necessarily valid.
+ * @author JSON.org
+ * @version 2012-04-20
+ */
+public class XMLStream {
+
+    /**
+     * The name of the elements to convert.
+     */
+    private final String name;
+
+    /**
+     * The source.
+     */
+    private final XMLTokener x;
+
+
+    /**
+     * Construct an XMLStream.
+     * @param reader A reader of the XML document.
+     * @param name   The name of the elements to convert.
+     */
+    public XMLStream(Reader reader, String name) {
+        this.x = new XMLTokener(reader);
+        this.name = name;
+    }
+
+
+    /**
+     * Read up to the end of the next element of the name, and convert it.
+     * @return A JSONObject of the element, keyed by its name, or null if
+     *  there are no more elements.
+     * @throws JSONException If the XML is not well-formed, or if the reader
+     *  fails.
+     */
+    public JSONObject next() throws JSONException {
+        while (this.x.skipPast("<")) {
+            Object token = this.x.nextToken();
+            if (this.name.equals(token)) {
+                JSONObject jo = new JSONObject();
+                XML.parseElement(this.x, jo, this.name);
+                return jo;
+            }
+
+// Step into any other element, past its open tag and attributes. Its
+// content is skipped up to the next '<'.
+
+            if (token instanceof String) {
+                do {
+                    token = this.x.nextToken();
+                } while (token != XML.GT);
+
+// Step out of an element, past its close tag.
+
+            } else if (token == XML.SLASH) {
+                this.x.skipPast(">");
+
+// Skip comments, CDATA, declarations and processing instructions.
+
+            } else {
+                XML.parse(this.x, new JSONObject(), null, token);
+            }
+        }
+        return null;
+    }
+}
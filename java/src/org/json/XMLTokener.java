@@ -1,5 +1,7 @@
 package org.json;
 
+import java.io.Reader;
+
 /*
 Copyright (c) 2002 JSON.org
 
@@ -55,6 +57,15 @@ public class XMLTokener extends JSONTokener {
         super(s);
     }
 
+    /**
+     * Construct an XMLTokener from a Reader, which is read as the tokens
+     * are taken, so that the source need not be held in memory.
+     * @param reader A reader.
+     */
+    public XMLTokener(Reader reader) {
+        super(reader);
+    }
+
     /**
      * Get the text in the CDATA block.
      * @return The string up to the <code>]]&gt;</code>.
@@ -33,6 +33,7 @@ import org.json.JSONObject;
  * http://www.pubnub.com/terms
  * 
  * @see Subscription
+ * @see TransientCallback
  * @author Paul Moore
  */
 public interface Callback
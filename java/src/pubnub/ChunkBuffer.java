@@ -0,0 +1,300 @@
+package pubnub;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONObject;
+
+/**
+ * A ChunkBuffer reassembles messages that were published in chunks, because
+ * they were too long for a single request. Each chunk is a JSON object of the
+ * form
+ *
+ * <pre>
+ * {"pn_chunk":"id","index":0,"count":3,"data":"..."}
+ * </pre>
+ *
+ * where the data of all the chunks of a message, in order, is the message as
+ * it would have been published whole. The chunks of a message may arrive in
+ * any order, interleaved with other messages.
+ *
+ * Chunks are told from messages by their shape alone, whether or not the
+ * publisher chunks: a message that is an object with a string
+ * <code>pn_chunk</code>, numbers <code>index</code> and <code>count</code>
+ * and a string <code>data</code> is taken as a chunk and is not passed on by
+ * itself. Applications must not publish messages of that shape.
+ *
+ * The buffer is bounded: it holds at most a number of characters of
+ * incomplete messages, each of which also counts a fixed overhead and one
+ * character per chunk it expects, and gives up on a message whose chunks do not all
+ * arrive within a timeout. The oldest incomplete messages are evicted first.
+ * The number of incomplete messages and of evicted chunks are kept as
+ * metrics. A ChunkBuffer is synchronized.
+ *
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ *
+ * @see Pubnub#setChunking(boolean)
+ * @see Subscription
+ */
+public class ChunkBuffer
+{
+	/** The key that marks a chunk. */
+	public static final String CHUNK_KEY = "pn_chunk";
+	/** Default number of characters of incomplete messages held. */
+	public static final int DEFAULT_CAPACITY = 1 << 20;
+	/** Default time (ms) to wait for the rest of a message. */
+	public static final long DEFAULT_TIMEOUT = 30000;
+	/** Maximum number of chunks of a message. */
+	public static final int MAX_CHUNKS = 1024;
+	/** Characters counted for each incomplete message, besides its chunks. */
+	public static final int PARTIAL_OVERHEAD = 64;
+
+	/** The key as it begins a chunk in a response. */
+	private static final byte[] CHUNK_BYTES = ("\"" + CHUNK_KEY + "\"").getBytes();
+
+	private int capacity = DEFAULT_CAPACITY;
+	private long timeout = DEFAULT_TIMEOUT;
+
+	/** Incomplete messages by id, oldest first. */
+	private final Map<String, Partial> partials = new LinkedHashMap<String, Partial>();
+	/** Number of characters held. */
+	private int size;
+	/** Number of chunks evicted or dropped. */
+	private long evicted;
+
+	/**
+	 * The chunks of a message received so far.
+	 */
+	private static class Partial
+	{
+		private final String[] pieces;
+		private final long started;
+		private int received;
+		private int size;
+
+		private Partial (int count, long started)
+		{
+			this.pieces = new String[count];
+			this.started = started;
+			this.size = PARTIAL_OVERHEAD + count;
+		}
+	}
+
+	/**
+	 * Determines whether a message is a chunk, by its shape.
+	 *
+	 * @param message A message.
+	 * @return True if it is a chunk.
+	 */
+	public static boolean isChunk (JSONObject message)
+	{
+		return message.opt(CHUNK_KEY) instanceof String && message.opt("index") instanceof Number
+				&& message.opt("count") instanceof Number && message.opt("data") instanceof String;
+	}
+
+	/**
+	 * Determines whether a range of a response may hold chunks, without
+	 * parsing it.
+	 *
+	 * @param bytes The UTF-8 bytes of the response.
+	 * @param offset The index of the first byte.
+	 * @param length The number of bytes.
+	 * @return False if it holds no chunk.
+	 */
+	public static boolean mayContain (byte[] bytes, int offset, int length)
+	{
+		int last = offset + length - CHUNK_BYTES.length;
+		for (int i = offset; i <= last; i++)
+		{
+			if (bytes[i] != '"')
+			{
+				continue;
+			}
+			int j = 1;
+			while (j < CHUNK_BYTES.length && bytes[i + j] == CHUNK_BYTES[j])
+			{
+				j++;
+			}
+			if (j == CHUNK_BYTES.length)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Adds a chunk.
+	 *
+	 * @param chunk A chunk, as told by <code>isChunk</code>.
+	 * @return The whole message as it would have been published, if this was
+	 *         its last missing chunk, or else null.
+	 */
+	public synchronized String add (JSONObject chunk)
+	{
+		long now = System.currentTimeMillis();
+		expire(now);
+
+		String id = chunk.optString(CHUNK_KEY);
+		int index = chunk.optInt("index", -1);
+		int count = chunk.optInt("count", -1);
+		Object data = chunk.opt("data");
+		if (count < 1 || count > MAX_CHUNKS || index < 0 || index >= count || !(data instanceof String))
+		{
+			evicted++;
+			return null;
+		}
+		String piece = (String) data;
+
+		if (count == 1)
+		{
+			return piece;
+		}
+
+		Partial partial = partials.get(id);
+		if (partial == null)
+		{
+			partial = new Partial(count, now);
+			partials.put(id, partial);
+			size += partial.size;
+		}
+		else if (partial.pieces.length != count || partial.pieces[index] != null)
+		{
+			// Conflicting or repeated.
+			evicted++;
+			return null;
+		}
+
+		partial.pieces[index] = piece;
+		partial.received++;
+		partial.size += piece.length();
+		size += piece.length();
+
+		if (partial.received == count)
+		{
+			partials.remove(id);
+			size -= partial.size;
+			StringBuilder message = new StringBuilder(partial.size);
+			for (String p : partial.pieces)
+			{
+				message.append(p);
+			}
+			return message.toString();
+		}
+
+		// Make room, oldest first; this may be the message just added to.
+		Iterator<Partial> oldest = partials.values().iterator();
+		while (size > capacity && oldest.hasNext())
+		{
+			evict(oldest.next());
+			oldest.remove();
+		}
+		return null;
+	}
+
+	/**
+	 * Evicts the messages that have waited longer than the timeout.
+	 */
+	private void expire (long now)
+	{
+		Iterator<Partial> oldest = partials.values().iterator();
+		while (oldest.hasNext())
+		{
+			Partial partial = oldest.next();
+			if (now - partial.started <= timeout)
+			{
+				break;
+			}
+			evict(partial);
+			oldest.remove();
+		}
+	}
+
+	private void evict (Partial partial)
+	{
+		size -= partial.size;
+		evicted += partial.received;
+	}
+
+	/**
+	 * @return The number of messages of which some but not all chunks have
+	 *         arrived.
+	 */
+	public synchronized int getPartialMessages ()
+	{
+		expire(System.currentTimeMillis());
+		return partials.size();
+	}
+
+	/**
+	 * @return The number of characters of incomplete messages held, with
+	 *         their overhead.
+	 */
+	public synchronized int getSize ()
+	{
+		return size;
+	}
+
+	/**
+	 * @return The number of chunks evicted, because their message did not
+	 *         complete in time or did not fit, or dropped as malformed or
+	 *         repeated.
+	 */
+	public synchronized long getEvictedChunks ()
+	{
+		return evicted;
+	}
+
+	/**
+	 * Sets the number of characters of incomplete messages held.
+	 *
+	 * @param capacity The capacity.
+	 */
+	public synchronized void setCapacity (int capacity)
+	{
+		if (capacity < 0)
+		{
+			throw new IllegalArgumentException("capacity: " + capacity);
+		}
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Sets the time to wait for the rest of a message.
+	 *
+	 * @param timeout The timeout in milliseconds.
+	 */
+	public synchronized void setTimeout (long timeout)
+	{
+		if (timeout < 0)
+		{
+			throw new IllegalArgumentException("timeout: " + timeout);
+		}
+		this.timeout = timeout;
+	}
+}
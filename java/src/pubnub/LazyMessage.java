@@ -0,0 +1,184 @@
+package pubnub;
+
+import java.util.Iterator;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * A LazyMessage is an encrypted message received from a Subscription that has
+ * not yet been decrypted. It holds on to the raw ciphertext, and the
+ * decryption and parsing is only done the first time any of its fields are
+ * accessed. The result is kept, so the work is done at most once.
+ *
+ * Callbacks that only need to know which channel a message arrived on (and may
+ * drop the message without reading it) therefore never pay for the AES work.
+ *
+ * Since decryption is deferred, a message that can not be decrypted throws a
+ * <code>PubnubException</code> each time it is accessed. If that exception
+ * leaves the callback, the Subscription skips the message, as it skips a
+ * message it could not decrypt up front, and goes on with the next one. The
+ * typed <code>opt</code> methods catch it and give their defaults, as they do
+ * for any value they can not read; <code>hasFailed()</code> tells the two
+ * apart.
+ *
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ *
+ * @see Subscription
+ * @author Paul Moore
+ */
+public class LazyMessage extends JSONObject
+{
+	private final Pubnub pubnub;
+	private final String channel;
+
+	/** The encrypted message, released once it has been decrypted. */
+	private String raw;
+
+	/** Why the message could not be decrypted, once that has been tried. */
+	private PubnubException failure;
+
+	/**
+	 * Creates a message that will be decrypted on demand.
+	 *
+	 * @param pubnub The Pubnub object holding the cipher key.
+	 * @param channel The channel the message was received on.
+	 * @param raw The encrypted message.
+	 */
+	protected LazyMessage (Pubnub pubnub, String channel, String raw)
+	{
+		this.pubnub = pubnub;
+		this.channel = channel;
+		this.raw = raw;
+	}
+
+	/**
+	 * @return The channel this message was received on.
+	 */
+	public String getChannel ()
+	{
+		return channel;
+	}
+
+	/**
+	 * @return True if the message has already been decrypted.
+	 */
+	public synchronized boolean isDecrypted ()
+	{
+		return raw == null;
+	}
+
+	/**
+	 * @return True if the message has been found not to decrypt or parse.
+	 */
+	public synchronized boolean hasFailed ()
+	{
+		return failure != null;
+	}
+
+	/**
+	 * Decrypts and parses the message, if it has not been done yet.
+	 * 
+	 * @throws PubnubException If the message can not be decrypted or parsed.
+	 */
+	private synchronized void decrypt ()
+	{
+		if (raw == null)
+		{
+			return;
+		}
+		if (failure != null)
+		{
+			throw failure;
+		}
+
+		try
+		{
+			JSONObject message = pubnub.decode(raw);
+			// Mark as decrypted first, super.put() must not recurse back here.
+			raw = null;
+			Iterator<?> keys = message.keys();
+			while (keys.hasNext())
+			{
+				String key = (String) keys.next();
+				super.put(key, message.opt(key));
+			}
+		}
+		catch (JSONException e)
+		{
+			failure = new PubnubException(e);
+			throw failure;
+		}
+		catch (PubnubException e)
+		{
+			failure = e;
+			throw e;
+		}
+	}
+
+	@Override
+	public Object opt (String key)
+	{
+		decrypt();
+		return super.opt(key);
+	}
+
+	@Override
+	public boolean has (String key)
+	{
+		decrypt();
+		return super.has(key);
+	}
+
+	@Override
+	public Iterator<?> keys ()
+	{
+		decrypt();
+		return super.keys();
+	}
+
+	@Override
+	public int length ()
+	{
+		decrypt();
+		return super.length();
+	}
+
+	@Override
+	public JSONObject put (String key, Object value) throws JSONException
+	{
+		decrypt();
+		return super.put(key, value);
+	}
+
+	@Override
+	public Object remove (String key)
+	{
+		decrypt();
+		return super.remove(key);
+	}
+}
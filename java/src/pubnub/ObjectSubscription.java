@@ -0,0 +1,216 @@
+package pubnub;
+
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONBinding;
+import org.json.JSONByteTokener;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONPool;
+import org.json.JSONReader;
+import org.json.JSONTokener;
+
+/**
+ * A Subscription whose messages are bound to objects of a class. The response
+ * is read with a <code>JSONReader</code>, and each message object is bound
+ * straight to a new object through a <code>JSONBinding</code>, so that no
+ * JSONObject is built for it. Encrypted messages are decrypted and then bound
+ * the same way.
+ * 
+ * If a response does not fit the class, it is parsed again in full, and the
+ * messages that cannot be bound are skipped.
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ * 
+ * @see ObjectCallback
+ * @see Subscription
+ * @see JSONBinding
+ */
+public class ObjectSubscription<T> extends Subscription
+{
+	private final JSONBinding binding;
+	private final ObjectCallback<T> callback;
+	private final Class<T> type;
+
+	/** The messages of the last response, until they are dispatched. */
+	private List<T> received;
+
+	/**
+	 * Creates a subscription object to a given channel and Pubnub account.
+	 * 
+	 * @param pubnub The Pubnub object this subscription belongs to.
+	 * @param channel The Pubnub channel.
+	 * @param type The class of the messages.
+	 * @param callback The callback to receive this subscription's messages.
+	 */
+	protected ObjectSubscription (Pubnub pubnub, String channel, Class<T> type, ObjectCallback<T> callback)
+	{
+		super(pubnub, (Callback) null, channel);
+		this.binding = JSONBinding.forClass(type);
+		this.callback = callback;
+		this.type = type;
+	}
+
+	@Override
+	protected String receive (URLConnection conn, String timetoken, JSONPool pool)
+	{
+		byte[] response = pubnub.read(conn);
+		if (response == null)
+		{
+			throw new PubnubException("No response");
+		}
+
+		List<T> messages = new ArrayList<T>();
+		String next;
+		if (ChunkBuffer.mayContain(response, 0, response.length))
+		{
+			// Chunks must go through the buffer.
+			next = bindEach(response, messages);
+		}
+		else
+		{
+			try
+			{
+				JSONReader reader = new JSONReader(new JSONByteTokener(response));
+				reader.beginArray();
+				reader.beginArray();
+				while (reader.hasNext())
+				{
+					// Not an object? Must be encrypted.
+					if (reader.peek() == JSONReader.BEGIN_OBJECT)
+					{
+						messages.add(type.cast(reader.nextObject(binding)));
+					}
+					else
+					{
+						messages.add(decrypt(reader.nextString()));
+					}
+				}
+				reader.endArray();
+				next = reader.nextString();
+			}
+			catch (JSONException e)
+			{
+				// Bind what can be bound, rather than retrying forever.
+				messages.clear();
+				next = bindEach(response, messages);
+			}
+			catch (PubnubException e)
+			{
+				// A message could not be decrypted.
+				messages.clear();
+				next = bindEach(response, messages);
+			}
+		}
+
+		// Update TimeToken.
+		if (!next.isEmpty())
+		{
+			timetoken = next;
+		}
+		received = messages;
+		return timetoken;
+	}
+
+	@Override
+	protected boolean dispatch (JSONPool pool)
+	{
+		List<T> messages = received;
+		received = null;
+		for (T message : messages)
+		{
+			// The subscription can also be cancelled by the callback.
+			if (!callback.execute(message))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a response in full and binds each of its messages, skipping the
+	 * ones that cannot be bound.
+	 * 
+	 * @return The time token of the response.
+	 */
+	private String bindEach (byte[] response, List<T> messages)
+	{
+		JSONArray array;
+		try
+		{
+			array = new JSONArray(new JSONByteTokener(response));
+		}
+		catch (JSONException e)
+		{
+			throw new PubnubException(e);
+		}
+		JSONArray objects = array.optJSONArray(0);
+		for (int i = 0; objects != null && objects.length() > i; i++)
+		{
+			Object message = objects.opt(i);
+			try
+			{
+				if (message instanceof String)
+				{
+					messages.add(decrypt((String) message));
+				}
+				else if (message instanceof JSONObject && ChunkBuffer.isChunk((JSONObject) message))
+				{
+					// Only bind complete messages.
+					String whole = chunks.add((JSONObject) message);
+					if (whole != null)
+					{
+						messages.add(type.cast(binding.read(new JSONTokener(pubnub.unwrap(whole)))));
+					}
+				}
+				else if (message != null)
+				{
+					messages.add(type.cast(binding.read(new JSONTokener(message.toString()))));
+				}
+			}
+			catch (JSONException ignored)
+			{
+			}
+			catch (PubnubException ignored)
+			{
+			}
+		}
+		return array.optString(1);
+	}
+
+	/**
+	 * Decrypts a message and binds it.
+	 */
+	private T decrypt (String message) throws JSONException
+	{
+		return type.cast(binding.read(new JSONTokener(pubnub.decrypt(message))));
+	}
+}
@@ -0,0 +1,421 @@
+package pubnub;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+import org.json.CDL;
+import org.json.JSONArray;
+import org.json.JSONByteSink;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.json.XMLStream;
+
+/**
+ * A PublishQueue publishes messages asynchronously, separating the CPU bound
+ * work (encryption and signing) from the I/O bound work (the request).
+ *
+ * Queued messages are taken in batches by a pool of crypto threads, normally
+ * one per core. Each crypto thread keeps its own Cipher and Mac, so no
+ * per-message setup is done. Once a message is encrypted and signed it is
+ * handed to the transport pool, which performs the actual request. This way
+ * publish throughput scales with the number of cores, regardless of how many
+ * threads are producing messages.
+ *
+ * A PublishQueue owns threads, so <code>shutdown()</code> must be called when
+ * it is no longer needed.
+ *
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ *
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ *
+ * @see Pubnub
+ * @author Paul Moore
+ */
+public class PublishQueue
+{
+	/** Maximum number of messages a crypto thread takes at once. */
+	public static final int BATCH_SIZE = 64;
+
+	private final Pubnub pubnub;
+	private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+	private final ExecutorService crypto;
+	private final ExecutorService transport;
+
+	private boolean shutdown = false;
+
+	/**
+	 * Creates a publish queue for a given Pubnub account.
+	 *
+	 * @param pubnub The Pubnub object to publish with.
+	 * @param cryptoThreads The number of threads encrypting and signing.
+	 * @param transportThreads The maximum number of concurrent requests.
+	 */
+	protected PublishQueue (Pubnub pubnub, int cryptoThreads, int transportThreads)
+	{
+		this.pubnub = pubnub;
+
+		crypto = Executors.newFixedThreadPool(cryptoThreads, DAEMON);
+		transport = Executors.newFixedThreadPool(transportThreads, DAEMON);
+
+		for (int i = 0; i < cryptoThreads; i++)
+		{
+			crypto.execute(new CryptoWorker());
+		}
+	}
+
+	/**
+	 * Queues a message to be published to a channel.
+	 *
+	 * @param channel The name of the channel to publish to.
+	 * @param message The message to publish.
+	 * @return The response array, once the message has been published. If the
+	 *         message could not be published, the Future will throw the
+	 *         underlying PubnubException.
+	 */
+	public synchronized Future<JSONArray> publish (String channel, JSONObject message)
+	{
+		if (shutdown)
+		{
+			throw new PubnubException("PublishQueue has been shut down");
+		}
+
+		Pending pending = new Pending(channel, message);
+		queue.add(pending);
+		return pending.task;
+	}
+
+	/**
+	 * Publishes each element of a given name in an XML document as a message
+	 * of its own, as the document is read. At most a number of messages are
+	 * queued or in flight at once: reading waits for the oldest of them to be
+	 * published, so that memory stays bounded by a few elements however long
+	 * the document, while the queue still encrypts and signs in batches.
+	 *
+	 * @param channel The name of the channel to publish to.
+	 * @param xml A reader of the XML document.
+	 * @param element The name of the repeating element to publish.
+	 * @param window The most messages queued or in flight at once.
+	 * @return The number of messages published, once all are.
+	 * @throws PubnubException If the XML is not well-formed, or a message could
+	 *             not be published. The messages already queued are still
+	 *             published.
+	 * @see XMLStream
+	 */
+	public int publishXML (String channel, Reader xml, String element, int window)
+	{
+		XMLStream stream = new XMLStream(xml, element);
+		Window inFlight = new Window(window);
+		try
+		{
+			JSONObject message;
+			while ((message = stream.next()) != null)
+			{
+				inFlight.add(publish(channel, message));
+			}
+		}
+		catch (JSONException e)
+		{
+			throw new PubnubException(e);
+		}
+		return inFlight.drain();
+	}
+
+	/**
+	 * Publishes each row of a comma delimited text as a message of its own, as
+	 * the text is read. The first row gives the names of the columns, and each
+	 * other row becomes a JSONObject of its values by those names, as
+	 * <code>CDL.toJSONArray</code> would produce. Blank rows are skipped. As
+	 * with <code>publishXML</code>, at most a number of messages are queued or
+	 * in flight at once, so a file of any size can be read straight from disk;
+	 * the rows are read in order on the calling thread, and encrypted, signed
+	 * and published in parallel by the queue.
+	 *
+	 * @param channel The name of the channel to publish to.
+	 * @param csv A reader of the comma delimited text.
+	 * @param window The most messages queued or in flight at once.
+	 * @return The number of messages published, once all are.
+	 * @throws PubnubException If the text is malformed, or a message could not
+	 *             be published. The messages already queued are still
+	 *             published.
+	 * @see CDL
+	 */
+	public int publishCSV (String channel, Reader csv, int window)
+	{
+		JSONTokener x = new JSONTokener(csv);
+		Window inFlight = new Window(window);
+		try
+		{
+			JSONArray names = CDL.rowToJSONArray(x);
+			if (names == null)
+			{
+				return 0;
+			}
+			for (;;)
+			{
+				JSONArray row = CDL.rowToJSONArray(x);
+				if (row != null)
+				{
+					inFlight.add(publish(channel, row.toJSONObject(names)));
+				}
+				else if (x.end())
+				{
+					break;
+				}
+			}
+		}
+		catch (JSONException e)
+		{
+			throw new PubnubException(e);
+		}
+		return inFlight.drain();
+	}
+
+	/**
+	 * Stops the queue. Messages that were already queued are still published,
+	 * but no new messages are accepted.
+	 */
+	public synchronized void shutdown ()
+	{
+		if (shutdown)
+		{
+			return;
+		}
+		shutdown = true;
+
+		crypto.shutdownNow();
+		try
+		{
+			crypto.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		// Finish whatever the crypto threads did not get to.
+		List<Pending> remaining = new ArrayList<Pending>();
+		queue.drainTo(remaining);
+		new CryptoWorker().process(remaining);
+		transport.shutdown();
+	}
+
+	/**
+	 * The messages of a bulk publish that are queued or in flight, oldest
+	 * first, up to a bound.
+	 */
+	private static class Window
+	{
+		private final int size;
+		private final Queue<Future<JSONArray>> futures = new ArrayDeque<Future<JSONArray>>();
+		private int count;
+
+		private Window (int size)
+		{
+			if (size < 1)
+			{
+				throw new IllegalArgumentException("window: " + size);
+			}
+			this.size = size;
+		}
+
+		/**
+		 * Adds a message, first waiting for the oldest if the window is full.
+		 */
+		private void add (Future<JSONArray> future)
+		{
+			if (futures.size() >= size)
+			{
+				await(futures.remove());
+			}
+			futures.add(future);
+			count++;
+		}
+
+		/**
+		 * Waits for all the messages.
+		 *
+		 * @return The number of messages added.
+		 */
+		private int drain ()
+		{
+			while (!futures.isEmpty())
+			{
+				await(futures.remove());
+			}
+			return count;
+		}
+
+		private static void await (Future<JSONArray> future)
+		{
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new PubnubException(e);
+			}
+			catch (ExecutionException e)
+			{
+				if (e.getCause() instanceof PubnubException)
+				{
+					throw (PubnubException) e.getCause();
+				}
+				throw new PubnubException(e);
+			}
+		}
+	}
+
+	/**
+	 * A message waiting to be encrypted, signed and published.
+	 */
+	private class Pending implements Callable<JSONArray>
+	{
+		private final String channel;
+		private final JSONObject message;
+		private final FutureTask<JSONArray> task = new FutureTask<JSONArray>(this);
+
+		private List<List<String>> urls;
+		private PubnubException error;
+
+		private Pending (String channel, JSONObject message)
+		{
+			this.channel = channel;
+			this.message = message;
+		}
+
+		@Override
+		public JSONArray call ()
+		{
+			if (error != null)
+			{
+				throw error;
+			}
+			return pubnub.requestAll(urls);
+		}
+	}
+
+	/**
+	 * Takes batches of messages off the queue, encrypts and signs them, then
+	 * hands them to the transport pool.
+	 */
+	private class CryptoWorker implements Runnable
+	{
+		private final Cipher cipher = pubnub.createCipher(Cipher.ENCRYPT_MODE);
+		private final Mac mac = pubnub.createMac();
+		private final JSONByteSink sink = new JSONByteSink();
+
+		@Override
+		public void run ()
+		{
+			List<Pending> batch = new ArrayList<Pending>(BATCH_SIZE);
+			try
+			{
+				while (!Thread.currentThread().isInterrupted())
+				{
+					// Block for the first message, then take whatever else is
+					// waiting.
+					batch.add(queue.take());
+					queue.drainTo(batch, BATCH_SIZE - 1);
+					process(batch);
+					batch.clear();
+				}
+			}
+			catch (InterruptedException ignored)
+			{
+				// Shutting down.
+			}
+		}
+
+		private void process (List<Pending> batch)
+		{
+			for (Pending pending : batch)
+			{
+				try
+				{
+					String msgString = pubnub.encrypt(pending.message, cipher, sink);
+					pending.urls = pubnub.publishURLs(pending.channel, msgString, mac);
+				}
+				catch (PubnubException e)
+				{
+					pending.error = e;
+				}
+				catch (RuntimeException e)
+				{
+					// Such as a message changed by its caller while it was
+					// being written; the worker must go on with the batch.
+					pending.error = new PubnubException(e);
+				}
+
+				if (pending.error == null)
+				{
+					try
+					{
+						transport.execute(pending.task);
+						continue;
+					}
+					catch (RejectedExecutionException e)
+					{
+						pending.error = new PubnubException(e);
+					}
+				}
+
+				// Report the failure on this thread.
+				pending.task.run();
+			}
+		}
+	}
+
+	/** Worker threads must not keep the VM alive. */
+	private static final ThreadFactory DAEMON = new ThreadFactory()
+	{
+		@Override
+		public Thread newThread (Runnable r)
+		{
+			Thread t = new Thread(r);
+			t.setDaemon(true);
+			return t;
+		}
+	};
+}
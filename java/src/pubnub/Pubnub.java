@@ -1,16 +1,22 @@
 package pubnub;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.net.URL;
 import java.net.URLConnection;
 import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.UUID;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import javax.crypto.Cipher;
 import javax.crypto.Mac;
@@ -18,8 +24,15 @@ import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.json.JSONArray;
+import org.json.JSONBinding;
+import org.json.JSONByteSink;
+import org.json.JSONByteTokener;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONPool;
+import org.json.JSONReader;
+import org.json.JSONTokener;
+import org.json.MessagePack;
 
 /**
  * PubNub 3.0 Real-time Push Cloud API.
@@ -60,6 +73,12 @@ public class Pubnub
 	public static final String CLOUD_ORIGIN = "pubsub.pubnub.com";
 	/** Size limit (# of characters) of a JSON message. */
 	public static final int LIMIT = 1800;
+	/** Marks a message published in binary, as Base64 encoded MessagePack. */
+	public static final String BINARY_PREFIX = "msgpack-";
+	/** Marks a compressed message, as Base64 encoded zlib data. */
+	public static final String COMPRESSED_PREFIX = "deflate-";
+	/** Size limit (# of bytes) of an inflated message. */
+	public static final int INFLATED_LIMIT = 1 << 20;
 
 	protected final String PUBLISH_KEY;
 	protected final String SUBSCRIBE_KEY;
@@ -72,6 +91,14 @@ public class Pubnub
 	private SecretKeySpec ckeySpec, skeySpec;
 	/** Encryption padding, 16 bytes of 0. */
 	private IvParameterSpec ivSpec;
+	/** Whether messages are published in binary. */
+	private volatile boolean binary;
+	/** Size (# of bytes) from which messages are compressed, or 0. */
+	private volatile int compressThreshold;
+	/** Whether messages too long for one request are published in chunks. */
+	private volatile boolean chunking;
+	/** Source of the ids of chunked messages. */
+	private final Random random = new Random();
 
 	/**
 	 * PubNub 3.0.
@@ -153,6 +180,71 @@ public class Pubnub
 		this(publish_key, subscribe_key, secret_key, null, false);
 	}
 
+	/**
+	 * Binary.
+	 * 
+	 * Publish messages as MessagePack, the binary form of JSON, instead of
+	 * JSON text. A message is sent as a JSON string of BINARY_PREFIX and the
+	 * Base64 encoded MessagePack or, if there is a cipher key, encrypted as
+	 * usual with the MessagePack in place of the text. Either way it takes
+	 * far fewer characters of the URL than percent-encoded JSON text, so
+	 * larger messages fit within LIMIT.
+	 * 
+	 * Subscriptions and history decode binary messages transparently, but
+	 * other clients must understand them too, so this is off by default.
+	 * 
+	 * @param binary True to publish in binary.
+	 * @see MessagePack
+	 */
+	public void setBinary (boolean binary)
+	{
+		this.binary = binary;
+	}
+
+	/**
+	 * Compression.
+	 * 
+	 * Compress messages of at least a number of bytes with deflate, before
+	 * they are encrypted. A compressed message is sent as a JSON string of
+	 * COMPRESSED_PREFIX and the Base64 encoded zlib data or, if there is a
+	 * cipher key, encrypted as usual with the zlib data in place of the
+	 * message. A message that does not get smaller is sent as it is.
+	 * 
+	 * Subscriptions and history inflate compressed messages transparently,
+	 * but other clients must understand them too, so this is off by default.
+	 * 
+	 * @param threshold The size in bytes, of the JSON text or MessagePack,
+	 *            from which to compress, or 0 to never compress.
+	 */
+	public void setCompression (int threshold)
+	{
+		if (threshold < 0)
+		{
+			throw new IllegalArgumentException("threshold: " + threshold);
+		}
+		this.compressThreshold = threshold;
+	}
+
+	/**
+	 * Chunking.
+	 * 
+	 * Publish messages that are too long for a single request in chunks,
+	 * instead of failing. The chunks are sent back to back, and are
+	 * reassembled by subscriptions and history, which only pass on complete
+	 * messages.
+	 * 
+	 * Other clients must understand chunks too, so this is off by default.
+	 * Subscriptions and history reassemble chunks either way, so messages of
+	 * the shape of a chunk must not be published as they are.
+	 * 
+	 * @param chunking True to publish long messages in chunks.
+	 * @see ChunkBuffer
+	 */
+	public void setChunking (boolean chunking)
+	{
+		this.chunking = chunking;
+	}
+
 	/**
 	 * Publish.
 	 * 
@@ -164,37 +256,114 @@ public class Pubnub
 	 */
 	public JSONArray publish (String channel, JSONObject message)
 	{
-		// Generate String to Sign.
-		String signature = "0";
-
 		// Encrypt the message if provided with a cipher key.
 		String msgString = encrypt(message);
 
-		if (SECRET_KEY != null)
-		{
-			StringBuilder string_to_sign = new StringBuilder();
-			string_to_sign.append(PUBLISH_KEY).append('/').append(SUBSCRIBE_KEY).append('/').append(SECRET_KEY).append('/').append(channel).append('/').append(msgString);
+		// Sign, and split into chunks if need be.
+		List<List<String>> urls = publishURLs(channel, msgString, createMac());
 
-			// Sign the message.
-			try
-			{
-				Mac sha256_HMAC = Mac.getInstance("HMACSHA256");
-				sha256_HMAC.init(skeySpec);
-				byte[] mac_data = sha256_HMAC.doFinal(string_to_sign.toString().getBytes("UTF-8"));
+		// Return JSONArray.
+		return requestAll(urls);
+	}
 
-				BigInteger number = new BigInteger(1, mac_data);
-				signature = number.toString(16);
+	/**
+	 * Publish Object.
+	 * 
+	 * Send an object to a channel, as the JSON object of its bean properties.
+	 * The object is written straight to JSON text, without building a
+	 * JSONObject.
+	 * 
+	 * @param channel The name of the channel to publish to.
+	 * @param event The object to publish.
+	 * @return The response array.
+	 * @see JSONBinding
+	 */
+	public JSONArray publishObject (String channel, Object event)
+	{
+		JSONBinding binding = JSONBinding.forClass(event.getClass());
+		Cipher cipher = createCipher(Cipher.ENCRYPT_MODE);
+		String msgString;
+		try
+		{
+			if (binary)
+			{
+				// MessagePack maps the event through its binding too.
+				byte[] bytes = MessagePack.toBytes(event);
+				msgString = encode(bytes, bytes.length, true, cipher);
 			}
-			catch (UnsupportedEncodingException e)
+			else if (cipher == null && compressThreshold == 0)
 			{
-				throw new PubnubException(e);
+				msgString = binding.toString(event);
 			}
-			catch (GeneralSecurityException e)
+			else
 			{
-				throw new PubnubException(e);
+				JSONByteSink sink = new JSONByteSink();
+				binding.write(event, sink);
+				msgString = encode(sink.buffer(), sink.size(), false, cipher);
 			}
 		}
+		catch (JSONException e)
+		{
+			throw new PubnubException(e);
+		}
+
+		// Sign, and split into chunks if need be.
+		List<List<String>> urls = publishURLs(channel, msgString, createMac());
+
+		// Return JSONArray.
+		return requestAll(urls);
+	}
+
+	/**
+	 * Publish Queue.
+	 *
+	 * Create a queue which encrypts and signs messages in batches on a pool of
+	 * threads, one per core, before handing them off to be published.
+	 *
+	 * @param transportThreads The maximum number of concurrent publish
+	 *            requests.
+	 * @return The PublishQueue object.
+	 * @see PublishQueue
+	 */
+	public PublishQueue publishQueue (int transportThreads)
+	{
+		return new PublishQueue(this, Runtime.getRuntime().availableProcessors(), transportThreads);
+	}
+
+	/**
+	 * Signs an (already encrypted) message.
+	 *
+	 * @param channel The channel the message will be published to.
+	 * @param msgString The message.
+	 * @param mac An initialized HMAC, as returned by <code>createMac()</code>.
+	 * @return The signature, or "0" if there is no secret key.
+	 */
+	protected String sign (String channel, String msgString, Mac mac)
+	{
+		if (mac == null)
+		{
+			return "0";
+		}
+
+		StringBuilder string_to_sign = new StringBuilder();
+		string_to_sign.append(PUBLISH_KEY).append('/').append(SUBSCRIBE_KEY).append('/').append(SECRET_KEY).append('/').append(channel).append('/').append(msgString);
 
+		// Sign the message.
+		try
+		{
+			byte[] mac_data = mac.doFinal(string_to_sign.toString().getBytes("UTF-8"));
+
+			BigInteger number = new BigInteger(1, mac_data);
+			return number.toString(16);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new PubnubException(e);
+		}
+	}
+
+	protected List<String> publishURL (String channel, String msgString, String signature)
+	{
 		// Build URL.
 		List<String> url = new LinkedList<String>();
 		url.add("publish");
@@ -204,9 +373,119 @@ public class Pubnub
 		url.add(channel);
 		url.add("0");
 		url.add(msgString);
+		return url;
+	}
 
-		// Return JSONArray.
-		return request(url);
+	/**
+	 * Signs an (already encrypted) message and builds the URLs to publish it.
+	 * If chunking is on and the message is too long for a single request, it
+	 * is split into chunks, each of which is signed on its own. Every URL is
+	 * checked against LIMIT before any is requested.
+	 *
+	 * @param channel The channel to publish to.
+	 * @param msgString The message.
+	 * @param mac An initialized HMAC, as returned by <code>createMac()</code>.
+	 * @return The URL, or the URLs of the chunks in order.
+	 * @see ChunkBuffer
+	 */
+	protected List<List<String>> publishURLs (String channel, String msgString, Mac mac)
+	{
+		List<List<String>> urls = new ArrayList<List<String>>();
+		List<String> url = publishURL(channel, msgString, sign(channel, msgString, mac));
+		if (!chunking || buildURL(ORIGIN, url).length() <= LIMIT)
+		{
+			urls.add(url);
+			return urls;
+		}
+
+		// Measure a chunk without data, with room for the longest index and
+		// count, and the longest signature.
+		String id = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+		String empty = chunk(id, Integer.MAX_VALUE, Integer.MAX_VALUE, "");
+		String signature = sign(channel, empty, mac);
+		int room = LIMIT - buildURL(ORIGIN, publishURL(channel, empty, signature)).length();
+		if (mac != null)
+		{
+			room -= 64 - signature.length();
+		}
+		if (room < 16)
+		{
+			throw new PubnubException("Channel too long to publish in chunks: " + channel);
+		}
+
+		// Take as many characters as fit, escaped and then percent-encoded.
+		List<String> pieces = new ArrayList<String>();
+		int length = msgString.length();
+		int start = 0;
+		while (start < length)
+		{
+			int end = start;
+			int cost = 0;
+			while (end < length)
+			{
+				cost += encodedLength(msgString, end);
+				if (cost > room)
+				{
+					break;
+				}
+				end++;
+			}
+			// Never split a surrogate pair.
+			if (end < length && end - start > 1 && Character.isHighSurrogate(msgString.charAt(end - 1)))
+			{
+				end--;
+			}
+			pieces.add(msgString.substring(start, end));
+			start = end;
+		}
+		if (pieces.size() > ChunkBuffer.MAX_CHUNKS)
+		{
+			throw new PubnubException("Message to long: " + pieces.size() + " chunks when limit is: " + ChunkBuffer.MAX_CHUNKS);
+		}
+
+		for (int i = 0; i < pieces.size(); i++)
+		{
+			String chunk = chunk(id, i, pieces.size(), pieces.get(i));
+			url = publishURL(channel, chunk, sign(channel, chunk, mac));
+			int urlLength = buildURL(ORIGIN, url).length();
+			if (urlLength > LIMIT)
+			{
+				throw new PubnubException("Message to long: " + urlLength + " when limit is: " + LIMIT);
+			}
+			urls.add(url);
+		}
+		return urls;
+	}
+
+	/**
+	 * Writes a chunk of a message.
+	 */
+	private static String chunk (String id, int index, int count, String data)
+	{
+		StringBuilder chunk = new StringBuilder(data.length() + 64);
+		chunk.append("{\"").append(ChunkBuffer.CHUNK_KEY).append("\":").append(JSONObject.quote(id));
+		chunk.append(",\"index\":").append(index);
+		chunk.append(",\"count\":").append(count);
+		chunk.append(",\"data\":").append(JSONObject.quote(data));
+		return chunk.append('}').toString();
+	}
+
+	/**
+	 * The most characters that a character of a message takes in a URL, once
+	 * quoted in a JSON string and percent-encoded.
+	 */
+	private int encodedLength (String msgString, int i)
+	{
+		char c = msgString.charAt(i);
+		if (c == '"' || c == '\\' || (c == '/' && i > 0 && msgString.charAt(i - 1) == '<'))
+		{
+			return 6;
+		}
+		if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100'))
+		{
+			return 8;
+		}
+		return isUnsafe(c) ? 3 : 1;
 	}
 
 	/**
@@ -224,6 +503,60 @@ public class Pubnub
 		return new Subscription(this, callback, channel);
 	}
 
+	/**
+	 * Subscribe.
+	 * 
+	 * Create a subscription object to a specified channel, optionally
+	 * deferring the decryption of each message until it is read.
+	 * 
+	 * @param channel The channel to subscribe to.
+	 * @param callback The callback object to receive the messages.
+	 * @param lazy If true, encrypted messages are decrypted on first access.
+	 * @return The Subscription object.
+	 * @see Subscription
+	 * @see LazyMessage
+	 */
+	public Subscription subscribe (String channel, Callback callback, boolean lazy)
+	{
+		return new Subscription(this, callback, channel, lazy);
+	}
+
+	/**
+	 * Subscribe.
+	 * 
+	 * Create a subscription object to a specified channel, routing each
+	 * message to a callback by the values at a few paths, before the message
+	 * is parsed.
+	 * 
+	 * @param channel The channel to subscribe to.
+	 * @param router The router that chooses a callback for each message.
+	 * @return The Subscription object.
+	 * @see Router
+	 */
+	public Subscription subscribe (String channel, Router router)
+	{
+		return new Subscription(this, router, channel);
+	}
+
+	/**
+	 * Subscribe.
+	 * 
+	 * Create a subscription object to a specified channel, binding each
+	 * message straight to an object of a class without building a
+	 * JSONObject.
+	 * 
+	 * @param channel The channel to subscribe to.
+	 * @param type The class of the messages.
+	 * @param callback The callback object to receive the messages.
+	 * @return The Subscription object.
+	 * @see ObjectSubscription
+	 * @see JSONBinding
+	 */
+	public <T> Subscription subscribe (String channel, Class<T> type, ObjectCallback<T> callback)
+	{
+		return new ObjectSubscription<T>(this, channel, type, callback);
+	}
+
 	/**
 	 * History.
 	 * 
@@ -235,28 +568,31 @@ public class Pubnub
 	 */
 	public JSONArray history (String channel, int limit)
 	{
-		List<String> url = new LinkedList<String>();
-
-		url.add("history");
-		url.add(SUBSCRIBE_KEY);
-		url.add(channel);
-		url.add("0");
-		url.add(Integer.toString(limit));
-
-		JSONArray response = request(url);
+		JSONArray response = request(historyURL(channel, limit));
+		JSONArray messages = new JSONArray();
+		ChunkBuffer chunks = new ChunkBuffer();
 		try
 		{
 			// Go through the array of returned messages.
 			for (int i = 0; i < response.length(); i++)
 			{
 				JSONObject message = response.optJSONObject(i);
-				// Message Null? Must be encrypted.
+				// Message Null? Must be encrypted or binary.
 				if (message == null)
 				{
-					message = new JSONObject(decrypt(response.optString(i)));
-					// Put the unencrypted object back into the array.
-					response.put(i, message);
+					message = decode(response.optString(i));
+				}
+				// Only pass on complete messages.
+				else if (ChunkBuffer.isChunk(message))
+				{
+					String whole = chunks.add(message);
+					if (whole == null)
+					{
+						continue;
+					}
+					message = new JSONObject(unwrap(whole));
 				}
+				messages.put(message);
 			}
 		}
 		catch (JSONException e)
@@ -264,7 +600,77 @@ public class Pubnub
 			throw new PubnubException(e);
 		}
 
-		return response;
+		return messages;
+	}
+
+	/**
+	 * History.
+	 * 
+	 * Load history from a channel, passing each message to a callback as it is
+	 * read. The response is never held in memory as a whole, so this is
+	 * suitable for very large histories.
+	 * 
+	 * @param channel The channel to get history of.
+	 * @param limit The limit to the number of messages to receive.
+	 * @param callback The callback object to receive the messages. If it
+	 *            returns false, no more messages are read.
+	 */
+	public void history (String channel, int limit, Callback callback)
+	{
+		URLConnection conn = prepareConnection(historyURL(channel, limit));
+		JSONReader reader = null;
+		ChunkBuffer chunks = new ChunkBuffer();
+
+		try
+		{
+			// Create the reader, will I/O block.
+			reader = new JSONReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
+
+			// Go through the array of returned messages, one at a time.
+			reader.beginArray();
+			while (reader.hasNext())
+			{
+				Object value = reader.nextValue();
+				// Not an object? Must be encrypted or binary.
+				JSONObject message = value instanceof JSONObject ? (JSONObject) value : decode(value.toString());
+				// Only pass on complete messages.
+				if (ChunkBuffer.isChunk(message))
+				{
+					String whole = chunks.add(message);
+					if (whole == null)
+					{
+						continue;
+					}
+					message = new JSONObject(unwrap(whole));
+				}
+				if (!callback.execute(message))
+				{
+					return;
+				}
+			}
+			reader.endArray();
+		}
+		catch (IOException e)
+		{
+			throw new PubnubException(e);
+		}
+		catch (JSONException e)
+		{
+			throw new PubnubException(e);
+		}
+		finally
+		{
+			if (reader != null)
+			{
+				try
+				{
+					reader.close();
+				}
+				catch (JSONException ignored)
+				{
+				}
+			}
+		}
 	}
 
 	/**
@@ -328,6 +734,18 @@ public class Pubnub
 		return UUID.randomUUID();
 	}
 
+	protected List<String> historyURL (String channel, int limit)
+	{
+		List<String> url = new LinkedList<String>();
+
+		url.add("history");
+		url.add(SUBSCRIBE_KEY);
+		url.add(channel);
+		url.add("0");
+		url.add(Integer.toString(limit));
+		return url;
+	}
+
 	protected URLConnection prepareConnection (Iterable<String> url_components)
 	{
 		return prepareConnection(ORIGIN, url_components);
@@ -335,15 +753,7 @@ public class Pubnub
 
 	protected URLConnection prepareConnection (String origin, Iterable<String> url_components)
 	{
-		StringBuilder o = new StringBuilder();
-
-		o.append(origin);
-
-		// Generate URL with UTF-8 Encoding.
-		for (String url_bit : url_components)
-		{
-			o.append("/").append(encodeURIcomponent(url_bit));
-		}
+		String o = buildURL(origin, url_components);
 
 		// Fail if string too long.
 		if (o.length() > LIMIT)
@@ -353,7 +763,7 @@ public class Pubnub
 
 		try
 		{
-			URL url = new URL(o.toString());
+			URL url = new URL(o);
 			URLConnection conn = url.openConnection();
 			// Don't timeout, we will do this manually.
 			conn.setConnectTimeout(0);
@@ -366,6 +776,42 @@ public class Pubnub
 		}
 	}
 
+	/**
+	 * Generates a URL with UTF-8 Encoding.
+	 */
+	private String buildURL (String origin, Iterable<String> url_components)
+	{
+		StringBuilder o = new StringBuilder();
+
+		o.append(origin);
+
+		for (String url_bit : url_components)
+		{
+			o.append("/").append(encodeURIcomponent(url_bit));
+		}
+		return o.toString();
+	}
+
+	/**
+	 * Requests the URLs of a message, or of its chunks, back to back. The
+	 * connection is kept alive between them, so a burst of chunks costs no
+	 * more connections than a single request.
+	 *
+	 * @param urls The URLs, as returned by <code>publishURLs()</code>.
+	 * @return The response to the last request.
+	 * @throws PubnubException If a request fails. The chunks after it are not
+	 *             sent.
+	 */
+	protected JSONArray requestAll (List<List<String>> urls)
+	{
+		JSONArray response = null;
+		for (List<String> url : urls)
+		{
+			response = request(url);
+		}
+		return response;
+	}
+
 	protected JSONArray request (Iterable<String> url_components)
 	{
 		return request(prepareConnection(ORIGIN, url_components));
@@ -377,6 +823,46 @@ public class Pubnub
 	}
 
 	protected JSONArray request (URLConnection conn)
+	{
+		return request(conn, null);
+	}
+
+	/**
+	 * Reads and parses the response of a connection.
+	 *
+	 * @param conn The connection.
+	 * @param pool The pool to parse the response from, or null.
+	 * @return The response array, or null if there is no connection.
+	 * @see JSONPool
+	 */
+	protected JSONArray request (URLConnection conn, JSONPool pool)
+	{
+		byte[] response = read(conn);
+		if (response == null)
+		{
+			return null;
+		}
+
+		// Parse the UTF-8 bytes directly.
+		try
+		{
+			JSONByteTokener x = new JSONByteTokener(response);
+			return pool == null ? new JSONArray(x) : pool.parseArray(x);
+		}
+		catch (JSONException e)
+		{
+			throw new PubnubException(e);
+		}
+	}
+
+	/**
+	 * Reads the whole response of a connection.
+	 *
+	 * @param conn The connection.
+	 * @return The UTF-8 bytes of the response, or null if there is no
+	 *         connection.
+	 */
+	protected byte[] read (URLConnection conn)
 	{
 		// Needed to catch an 'expected' race condition when a Subscription is
 		// using this method.
@@ -385,19 +871,20 @@ public class Pubnub
 			return null;
 		}
 
-		BufferedReader reader = null;
-		StringBuilder o = new StringBuilder();
+		InputStream in = null;
+		ByteArrayOutputStream o = new ByteArrayOutputStream();
 
 		try
 		{
-			// Create the reader, will I/O block.
-			reader = new BufferedReader(new InputStreamReader(conn.getInputStream()));
+			// Create the stream, will I/O block.
+			in = conn.getInputStream();
 
 			// Read JSON Message.
-			String line;
-			while ((line = reader.readLine()) != null)
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) != -1)
 			{
-				o.append(line);
+				o.write(buffer, 0, n);
 			}
 		}
 		catch (IOException e)
@@ -406,11 +893,11 @@ public class Pubnub
 		}
 		finally
 		{
-			if (reader != null)
+			if (in != null)
 			{
 				try
 				{
-					reader.close();
+					in.close();
 				}
 				catch (IOException ignored)
 				{
@@ -418,10 +905,36 @@ public class Pubnub
 			}
 		}
 
-		// Parse JSON String.
+		return o.toByteArray();
+	}
+
+	/**
+	 * Decrypts a message that is not a JSON object, giving its JSON text. A
+	 * binary message is decoded and written back out as JSON text.
+	 *
+	 * @param raw The encrypted or binary message.
+	 * @return The JSON text of the message, or the message itself if it is
+	 *         neither binary nor encrypted with a cipher key.
+	 */
+	protected String decrypt (String raw)
+	{
+		if (isPlain(raw))
+		{
+			return raw;
+		}
+
 		try
 		{
-			return new JSONArray(o.toString());
+			byte[] decrypted = decipher(raw);
+			if (isBinary(decrypted))
+			{
+				return MessagePack.toJSONObject(decrypted).toString();
+			}
+			return new String(decrypted, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new PubnubException(e);
 		}
 		catch (JSONException e)
 		{
@@ -429,9 +942,82 @@ public class Pubnub
 		}
 	}
 
-	protected String decrypt (String raw)
+	/**
+	 * Decrypts and parses a message that is not a JSON object. A binary
+	 * message is read straight from its MessagePack, with no JSON text in
+	 * between.
+	 *
+	 * @param raw The encrypted or binary message.
+	 * @return The message.
+	 * @throws JSONException If the message is not a JSON object.
+	 */
+	protected JSONObject decode (String raw) throws JSONException
 	{
-		if (CIPHER_KEY != null)
+		if (isPlain(raw))
+		{
+			return new JSONObject(raw);
+		}
+
+		byte[] decrypted = decipher(raw);
+		if (isBinary(decrypted))
+		{
+			return MessagePack.toJSONObject(decrypted);
+		}
+		return new JSONObject(new JSONByteTokener(decrypted));
+	}
+
+	/**
+	 * Gives the JSON text of a message reassembled from chunks, decrypting
+	 * and decoding it if need be.
+	 *
+	 * @param msgString The message, as it would have been published whole.
+	 * @return The JSON text of the message object.
+	 * @throws JSONException If the message is malformed.
+	 */
+	protected String unwrap (String msgString) throws JSONException
+	{
+		int i = 0;
+		while (i < msgString.length() && msgString.charAt(i) <= ' ')
+		{
+			i++;
+		}
+		if (i < msgString.length() && msgString.charAt(i) == '{')
+		{
+			return msgString;
+		}
+		// Encrypted, binary or compressed.
+		return decrypt(new JSONTokener(msgString).nextValue().toString());
+	}
+
+	/**
+	 * Determines whether a message is JSON text as it is, that is neither
+	 * encrypted, binary nor compressed.
+	 */
+	private boolean isPlain (String raw)
+	{
+		return CIPHER_KEY == null && !raw.startsWith(BINARY_PREFIX) && !raw.startsWith(COMPRESSED_PREFIX);
+	}
+
+	/**
+	 * Recovers the bytes of a binary, compressed or encrypted message,
+	 * inflating them if they were compressed.
+	 */
+	private byte[] decipher (String raw)
+	{
+		String prefix = raw.startsWith(BINARY_PREFIX) ? BINARY_PREFIX : raw.startsWith(COMPRESSED_PREFIX) ? COMPRESSED_PREFIX : null;
+		byte[] decrypted;
+		if (prefix != null)
+		{
+			try
+			{
+				decrypted = Base64.decode(raw.substring(prefix.length()));
+			}
+			catch (IndexOutOfBoundsException e)
+			{
+				throw new PubnubException("Malformed message: " + prefix);
+			}
+		}
+		else
 		{
 			try
 			{
@@ -442,56 +1028,296 @@ public class Pubnub
 				String encoded = array.optString(0);
 
 				byte[] encrypted = Base64.decode(encoded);
-				byte[] decrypted = cipher.doFinal(encrypted);
-
-				String message = new String(decrypted, "UTF-8");
-				return message;
+				decrypted = cipher.doFinal(encrypted);
 			}
 			catch (GeneralSecurityException e)
 			{
 				throw new PubnubException(e);
 			}
-			catch (UnsupportedEncodingException e)
+			catch (JSONException e)
 			{
 				throw new PubnubException(e);
 			}
-			catch (JSONException e)
+		}
+
+		if (prefix == COMPRESSED_PREFIX || (prefix == null && isCompressed(decrypted)))
+		{
+			return inflate(decrypted);
+		}
+		return decrypted;
+	}
+
+	/**
+	 * Determines whether decrypted bytes are zlib data rather than JSON text
+	 * or MessagePack. A zlib header is a multiple of 31 whose first byte is
+	 * 0x08 to 0x78, none of which JSON text or a MessagePack map can begin
+	 * with.
+	 */
+	private static boolean isCompressed (byte[] decrypted)
+	{
+		if (decrypted.length < 2)
+		{
+			return false;
+		}
+		int header = ((decrypted[0] & 0xff) << 8) | (decrypted[1] & 0xff);
+		return (header & 0x8f00) == 0x0800 && header % 31 == 0;
+	}
+
+	/**
+	 * Compresses the first length bytes of a buffer into zlib data.
+	 */
+	private static byte[] deflate (byte[] buffer, int length)
+	{
+		Deflater deflater = new Deflater();
+		try
+		{
+			deflater.setInput(buffer, 0, length);
+			deflater.finish();
+			ByteArrayOutputStream o = new ByteArrayOutputStream(length / 2 + 16);
+			byte[] chunk = new byte[1024];
+			while (!deflater.finished())
 			{
-				throw new PubnubException(e);
+				int n = deflater.deflate(chunk);
+				o.write(chunk, 0, n);
+			}
+			return o.toByteArray();
+		}
+		finally
+		{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Inflates zlib data, refusing to inflate more than INFLATED_LIMIT bytes.
+	 */
+	private static byte[] inflate (byte[] deflated)
+	{
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(deflated);
+			ByteArrayOutputStream o = new ByteArrayOutputStream(deflated.length * 4);
+			byte[] chunk = new byte[4096];
+			while (!inflater.finished())
+			{
+				int n = inflater.inflate(chunk);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+				{
+					throw new PubnubException("Truncated compressed message");
+				}
+				o.write(chunk, 0, n);
+				if (o.size() > INFLATED_LIMIT)
+				{
+					throw new PubnubException("Compressed message inflates beyond: " + INFLATED_LIMIT);
+				}
 			}
+			return o.toByteArray();
 		}
+		catch (DataFormatException e)
+		{
+			throw new PubnubException(e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+	}
 
-		return raw;
+	/**
+	 * Determines whether decrypted bytes are MessagePack rather than JSON
+	 * text. A message is a JSON object, which in MessagePack begins with a
+	 * map type, a byte that JSON text can not begin with.
+	 */
+	private static boolean isBinary (byte[] decrypted)
+	{
+		if (decrypted.length == 0)
+		{
+			return false;
+		}
+		int b = decrypted[0] & 0xff;
+		return (b >= 0x80 && b <= 0x8f) || b == 0xde || b == 0xdf;
 	}
 
 	protected String encrypt (JSONObject message)
 	{
-		String raw = message.toString();
-		if (CIPHER_KEY != null)
+		return encrypt(message, createCipher(Cipher.ENCRYPT_MODE));
+	}
+
+	/**
+	 * Encrypts a message with a cipher that can be reused between calls.
+	 *
+	 * @param message The message.
+	 * @param cipher An initialized cipher, as returned by
+	 *            <code>createCipher()</code>.
+	 * @return The encrypted message, or the message itself if there is no
+	 *         cipher key.
+	 */
+	protected String encrypt (JSONObject message, Cipher cipher)
+	{
+		return encrypt(message, cipher, cipher == null ? null : new JSONByteSink());
+	}
+
+	/**
+	 * Encrypts a message, serializing it as UTF-8 into a sink that can be
+	 * reused between calls, so that no intermediate string is made.
+	 *
+	 * @param message The message.
+	 * @param cipher An initialized cipher, as returned by
+	 *            <code>createCipher()</code>.
+	 * @param sink The buffer to serialize the message into, or null.
+	 * @return The encrypted message, or the message itself if there is no
+	 *         cipher key, in binary or compressed if so configured.
+	 */
+	protected String encrypt (JSONObject message, Cipher cipher, JSONByteSink sink)
+	{
+		try
 		{
-			try
+			if (binary)
 			{
-				Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-				cipher.init(Cipher.ENCRYPT_MODE, ckeySpec, ivSpec);
+				byte[] bytes = MessagePack.toBytes(message);
+				return encode(bytes, bytes.length, true, cipher);
+			}
 
-				byte[] bytes = raw.getBytes("UTF-8");
-				byte[] encrypted = cipher.doFinal(bytes);
+			if (cipher == null && compressThreshold == 0)
+			{
+				return message.toString();
+			}
 
-				String encoded = Base64.encode(encrypted);
-				JSONArray array = new JSONArray();
-				array.put(encoded);
-				return array.toString();
+			if (sink == null)
+			{
+				sink = new JSONByteSink();
 			}
-			catch (GeneralSecurityException e)
+			sink.reset();
+			message.write(sink);
+		}
+		catch (JSONException e)
+		{
+			throw new PubnubException(e);
+		}
+		return encode(sink.buffer(), sink.size(), false, cipher);
+	}
+
+	/**
+	 * Compresses and encrypts a serialized message, as configured.
+	 *
+	 * @param buffer The UTF-8 JSON text or the MessagePack of the message.
+	 * @param length The number of bytes in the buffer.
+	 * @param binary True if the buffer holds MessagePack.
+	 * @param cipher The cipher, or null if there is no cipher key.
+	 * @return The message to publish.
+	 */
+	private String encode (byte[] buffer, int length, boolean binary, Cipher cipher)
+	{
+		int threshold = compressThreshold;
+		if (threshold > 0 && length >= threshold)
+		{
+			byte[] deflated = deflate(buffer, length);
+			if (cipher != null && deflated.length < length)
 			{
-				throw new PubnubException(e);
+				return encrypt(deflated, deflated.length, cipher);
 			}
-			catch (UnsupportedEncodingException e)
+			// Base64 adds a third, but JSON text would be percent-encoded.
+			if (cipher == null && deflated.length * 4 / 3 + COMPRESSED_PREFIX.length() < length)
 			{
-				throw new PubnubException(e);
+				return JSONObject.quote(COMPRESSED_PREFIX + Base64.encode(deflated));
 			}
 		}
-		return raw;
+
+		if (cipher != null)
+		{
+			return encrypt(buffer, length, cipher);
+		}
+		if (binary)
+		{
+			byte[] bytes = buffer;
+			if (bytes.length != length)
+			{
+				bytes = new byte[length];
+				System.arraycopy(buffer, 0, bytes, 0, length);
+			}
+			return JSONObject.quote(BINARY_PREFIX + Base64.encode(bytes));
+		}
+		try
+		{
+			return new String(buffer, 0, length, "UTF-8");
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new PubnubException(e);
+		}
+	}
+
+	/**
+	 * Encrypts the first length bytes of a buffer.
+	 */
+	private String encrypt (byte[] buffer, int length, Cipher cipher)
+	{
+		try
+		{
+			byte[] encrypted = cipher.doFinal(buffer, 0, length);
+
+			String encoded = Base64.encode(encrypted);
+			JSONArray array = new JSONArray();
+			array.put(encoded);
+			return array.toString();
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new PubnubException(e);
+		}
+	}
+
+	/**
+	 * Creates an AES cipher for this account. Creating a Cipher is expensive,
+	 * once initialized it can be reused for any number of messages by the same
+	 * thread.
+	 *
+	 * @param mode Cipher.ENCRYPT_MODE or Cipher.DECRYPT_MODE.
+	 * @return The cipher, or null if there is no cipher key.
+	 */
+	protected Cipher createCipher (int mode)
+	{
+		if (CIPHER_KEY == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
+			cipher.init(mode, ckeySpec, ivSpec);
+			return cipher;
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new PubnubException(e);
+		}
+	}
+
+	/**
+	 * Creates the HMAC used to sign messages. Like a Cipher, it can be reused
+	 * by the same thread.
+	 *
+	 * @return The HMAC, or null if there is no secret key.
+	 */
+	protected Mac createMac ()
+	{
+		if (SECRET_KEY == null)
+		{
+			return null;
+		}
+
+		try
+		{
+			Mac sha256_HMAC = Mac.getInstance("HMACSHA256");
+			sha256_HMAC.init(skeySpec);
+			return sha256_HMAC;
+		}
+		catch (GeneralSecurityException e)
+		{
+			throw new PubnubException(e);
+		}
 	}
 
 	private String encodeURIcomponent (String s)
@@ -0,0 +1,57 @@
+package pubnub;
+
+import org.json.JSONPath;
+
+/**
+ * Routes the messages of a subscription to callbacks. The router names the
+ * values it needs with a <code>JSONPath</code>, and those values are pulled
+ * out of each raw message without parsing the rest of it. Only a message the
+ * router hands to a callback is built into a JSONObject.
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ * 
+ * @see Pubnub#subscribe(String, Router)
+ * @see Subscription
+ */
+public interface Router
+{
+	/**
+	 * Get the paths of the values to route by. This is called once, when the
+	 * subscription is created.
+	 * 
+	 * @return The compiled paths.
+	 */
+	public JSONPath getPaths ();
+
+	/**
+	 * Choose the callback for a message.
+	 * 
+	 * @param values The values at the paths, null where the message has none.
+	 * @return The callback to run on the message, or null to drop it.
+	 */
+	public Callback route (Object[] values);
+}
@@ -5,8 +5,12 @@ import java.net.URLConnection;
 import java.util.Arrays;
 
 import org.json.JSONArray;
+import org.json.JSONByteTokener;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONPath;
+import org.json.JSONPool;
+import org.json.JSONTokener;
 
 /**
  * A Subscription object is a concrete realization of a connection to a Pubnub
@@ -57,13 +61,23 @@ import org.json.JSONObject;
  */
 public class Subscription implements Runnable
 {
-	private final Pubnub pubnub;
+	protected final Pubnub pubnub;
 	private final Callback callback;
-	private final String channel;
+	protected final String channel;
+	private final boolean lazy;
+	private final Router router;
+	private final JSONPath paths;
+	/** Chunks of messages that have not all arrived yet. */
+	protected final ChunkBuffer chunks = new ChunkBuffer();
 
 	private URLConnection conn;
 	private boolean shouldStop = false;
 
+	/** The messages of the last response, until they are dispatched. */
+	private JSONArray received;
+	private byte[] receivedResponse;
+	private int[] receivedMessages;
+
 	/**
 	 * Creates a subscription object to a given channel and Pubnub account.
 	 * 
@@ -72,10 +86,57 @@ public class Subscription implements Runnable
 	 * @param channel The Pubnub channel.
 	 */
 	protected Subscription (Pubnub pubnub, Callback callback, String channel)
+	{
+		this(pubnub, callback, channel, false);
+	}
+
+	/**
+	 * Creates a subscription object to a given channel and Pubnub account.
+	 * 
+	 * @param pubnub The Pubnub object this subscription belongs to.
+	 * @param callback The callback to receive this subscription's messages.
+	 * @param channel The Pubnub channel.
+	 * @param lazy If true, encrypted messages are passed to the callback as
+	 *            <code>LazyMessage</code>s, and are only decrypted when read.
+	 * @see LazyMessage
+	 */
+	protected Subscription (Pubnub pubnub, Callback callback, String channel, boolean lazy)
 	{
 		this.pubnub = pubnub;
 		this.callback = callback;
 		this.channel = channel;
+		this.lazy = lazy;
+		this.router = null;
+		this.paths = null;
+	}
+
+	/**
+	 * Creates a subscription object to a given channel and Pubnub account,
+	 * routing each message to a callback.
+	 * 
+	 * @param pubnub The Pubnub object this subscription belongs to.
+	 * @param router The router that chooses a callback for each message.
+	 * @param channel The Pubnub channel.
+	 * @see Router
+	 */
+	protected Subscription (Pubnub pubnub, Router router, String channel)
+	{
+		this.pubnub = pubnub;
+		this.callback = null;
+		this.channel = channel;
+		this.lazy = false;
+		this.router = router;
+		this.paths = router.getPaths();
+	}
+
+	/**
+	 * @return The buffer in which this subscription reassembles messages
+	 *         that were published in chunks, with its metrics.
+	 * @see Pubnub#setChunking(boolean)
+	 */
+	public ChunkBuffer getChunkBuffer ()
+	{
+		return chunks;
 	}
 
 	/**
@@ -101,7 +162,8 @@ public class Subscription implements Runnable
 	 * Begins the subscription process. This method is blocking. To terminate,
 	 * <code>unsubscribe()</code> must be called in a separate thread, or the
 	 * <code>callback</code> must return <code>false</code> the next time a
-	 * message is received.
+	 * message is received. If the callback throws, the subscription ends and
+	 * the exception is passed on from this method.
 	 * 
 	 * This method can and should only be invoked once. If it is called more
 	 * than once, nothing will happen, the subscription can only be used a
@@ -113,6 +175,9 @@ public class Subscription implements Runnable
 	{
 		String timetoken = "0";
 
+		// A callback that keeps no messages lets them be recycled.
+		JSONPool pool = callback instanceof TransientCallback ? new JSONPool() : null;
+
 		// Loop while the subscription has not been stopped.
 		while (true)
 		{
@@ -132,19 +197,14 @@ public class Subscription implements Runnable
 				}
 			}
 
-			JSONArray response = null;
 			try
 			{
 				// Wait for Message.
-				response = pubnub.request(conn);
-			}
-			catch (PubnubException ignored)
-			{
+				timetoken = receive(conn, timetoken, pool);
 			}
-
-			// Connection failed or user called unsubscribe().
-			if (response == null)
+			catch (PubnubException e)
 			{
+				// Connection failed or user called unsubscribe().
 				// Wait 1 second then try again.
 				try
 				{
@@ -156,38 +216,258 @@ public class Subscription implements Runnable
 
 				continue;
 			}
-			JSONArray messages = response.optJSONArray(0);
+
+			// Run user Callback and Reconnect if user permits. The time token
+			// has already moved on, and whatever the callback throws is passed
+			// on rather than retried, so no message is delivered twice.
+			if (!dispatch(pool))
+			{
+				// The subscription was cancelled by the callback.
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Waits for the next response on a connection, and keeps its messages
+	 * until they are dispatched.
+	 * 
+	 * @param conn The prepared connection.
+	 * @param timetoken The current time token.
+	 * @param pool The pool to parse the response through, or null.
+	 * @return The next time token.
+	 * @throws PubnubException If the connection failed or was disconnected.
+	 */
+	protected String receive (URLConnection conn, String timetoken, JSONPool pool)
+	{
+		if (router != null)
+		{
+			return locate(conn, timetoken);
+		}
+
+		JSONArray response = pubnub.request(conn, pool);
+		if (response == null)
+		{
+			throw new PubnubException("No response");
+		}
+		received = response.optJSONArray(0);
+
+		// Update TimeToken.
+		if (!response.optString(1).isEmpty())
+		{
+			timetoken = response.optString(1);
+		}
+		return timetoken;
+	}
+
+	/**
+	 * Runs the callback on each message of the last response. Anything the
+	 * callback throws is passed on to the caller of <code>run</code>.
+	 * 
+	 * @param pool The pool the response was parsed through, or null.
+	 * @return False if the callback cancelled the subscription.
+	 */
+	protected boolean dispatch (JSONPool pool)
+	{
+		if (router != null)
+		{
+			return route();
+		}
+
+		JSONArray messages = received;
+		received = null;
+		for (int i = 0; messages.length() > i; i++)
+		{
+			JSONObject message = messages.optJSONObject(i);
+			// Null message? Must be encrypted or binary.
+			if (message == null && lazy)
+			{
+				// Defer decryption until the callback reads the message.
+				message = new LazyMessage(pubnub, channel, messages.optString(i));
+			}
+			else if (message == null)
+			{
+				try
+				{
+					// Attempt to decrypt or decode the message.
+					String raw = messages.optString(i);
+					message = pool == null ? pubnub.decode(raw) : pool.parseObject(new JSONTokener(pubnub.decrypt(raw)));
+				}
+				catch (JSONException e)
+				{
+					continue;
+				}
+				catch (PubnubException e)
+				{
+					// Not retried, since it would fail again.
+					continue;
+				}
+			}
+			// Only pass on complete messages.
+			else if (ChunkBuffer.isChunk(message))
+			{
+				try
+				{
+					String whole = chunks.add(message);
+					if (whole == null)
+					{
+						continue;
+					}
+					message = new JSONObject(pubnub.unwrap(whole));
+				}
+				catch (JSONException e)
+				{
+					continue;
+				}
+				catch (PubnubException e)
+				{
+					continue;
+				}
+			}
+			boolean more;
+			try
+			{
+				more = callback.execute(message);
+			}
+			catch (PubnubException e)
+			{
+				// A lazy message that can not be decrypted is skipped, as it
+				// would have been had it been decrypted up front.
+				if (message instanceof LazyMessage && ((LazyMessage) message).hasFailed())
+				{
+					continue;
+				}
+				throw e;
+			}
+			// The subscription can also be cancelled by the callback.
+			if (!more)
+			{
+				return false;
+			}
+		}
+
+		if (pool != null)
+		{
+			pool.recycle();
+		}
+		return true;
+	}
+
+	/**
+	 * Waits for the next response on a connection, and locates its messages
+	 * and time token without parsing them.
+	 */
+	private String locate (URLConnection conn, String timetoken)
+	{
+		byte[] response = pubnub.read(conn);
+		if (response == null)
+		{
+			throw new PubnubException("No response");
+		}
+
+		int[] parts;
+		int[] messages;
+		try
+		{
+			// Locate the messages and the time token without parsing them.
+			parts = JSONPath.elements(response, 0, response.length);
+			if (parts.length < 4)
+			{
+				throw new PubnubException("Malformed response");
+			}
+			messages = JSONPath.elements(response, parts[0], parts[1]);
 
 			// Update TimeToken.
-			if (!response.optString(1).isEmpty())
+			String next = new JSONByteTokener(response, parts[2], parts[3]).nextValue().toString();
+			if (!next.isEmpty())
 			{
-				timetoken = response.optString(1);
+				timetoken = next;
 			}
+		}
+		catch (JSONException e)
+		{
+			throw new PubnubException(e);
+		}
+
+		receivedResponse = response;
+		receivedMessages = messages;
+		return timetoken;
+	}
 
-			// Run user Callback and Reconnect if user permits.
-			for (int i = 0; messages.length() > i; i++)
+	/**
+	 * Routes each message of the last response by the values at the router's
+	 * paths. Only the messages that are routed to a callback are parsed.
+	 */
+	private boolean route ()
+	{
+		byte[] response = receivedResponse;
+		int[] messages = receivedMessages;
+		receivedResponse = null;
+		receivedMessages = null;
+		for (int i = 0; messages.length > i; i += 2)
+		{
+			int offset = messages[i];
+			int length = messages[i + 1];
+			Callback routed;
+			JSONObject message;
+			try
 			{
-				JSONObject message = messages.optJSONObject(i);
-				// Null message? Must be encrypted.
-				if (message == null)
+				if (response[offset] != '{' || ChunkBuffer.mayContain(response, offset, length))
 				{
-					try
+					// Not an object, or perhaps a chunk? Parse it first.
+					Object value = new JSONByteTokener(response, offset, length).nextValue();
+					String decrypted;
+					if (!(value instanceof JSONObject))
 					{
-						// Attempt to decrypt the message.
-						message = new JSONObject(pubnub.decrypt(messages.optString(i)));
+						decrypted = pubnub.decrypt(value.toString());
 					}
-					catch (JSONException e)
+					else if (ChunkBuffer.isChunk((JSONObject) value))
+					{
+						// Only route complete messages.
+						String whole = chunks.add((JSONObject) value);
+						if (whole == null)
+						{
+							continue;
+						}
+						decrypted = pubnub.unwrap(whole);
+					}
+					else
+					{
+						decrypted = value.toString();
+					}
+					routed = router.route(paths.extract(decrypted));
+					if (routed == null)
 					{
 						continue;
 					}
+					message = new JSONObject(decrypted);
 				}
-				// The subscription can also be cancelled by the callback.
-				if (!callback.execute(message))
+				else
 				{
-					return;
+					routed = router.route(paths.extract(response, offset, length));
+					if (routed == null)
+					{
+						continue;
+					}
+					message = new JSONObject(new JSONByteTokener(response, offset, length));
 				}
 			}
+			catch (JSONException e)
+			{
+				continue;
+			}
+			catch (PubnubException e)
+			{
+				// Not retried, since it would fail again.
+				continue;
+			}
+			// The subscription can also be cancelled by the callback.
+			if (!routed.execute(message))
+			{
+				return false;
+			}
 		}
+		return true;
 	}
 
 	@Override
@@ -0,0 +1,204 @@
+package examples;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.UnsupportedEncodingException;
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONByteTokener;
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+/**
+ * Checks that a JSONByteTokener decodes UTF-8 as a JSONTokener reading the
+ * same bytes through an InputStreamReader does, malformed bytes included:
+ * both must give the same characters one at a time, and the same trees.
+ * Runs over a few special sequences and millions of random ones, made mostly
+ * of the bytes at the edges of the UTF-8 ranges. Exits with status 1 on the
+ * first difference.
+ * 
+ * <pre>
+ * javac -cp src -d /tmp/tests tests/examples/JSONByteTokenerTest.java
+ * java -cp src:/tmp/tests examples.JSONByteTokenerTest [count] [seed]
+ * </pre>
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ */
+class JSONByteTokenerTest
+{
+	/** Bytes random sequences are made of, weighted towards the edges. */
+	private static final int[] BYTES = { 'a', 'z', ' ', 0x7f, 0x80, 0x8f, 0x90, 0x9f, 0xa0, 0xbf, 0x80, 0xbf, 0xc0, 0xc1,
+			0xc2, 0xdf, 0xe0, 0xe1, 0xec, 0xed, 0xee, 0xef, 0xf0, 0xf1, 0xf3, 0xf4, 0xf5, 0xf7, 0xf8, 0xfb, 0xfc, 0xfe,
+			0xff };
+
+	private static final int[][] SPECIAL = { {}, { 0xc3, 0xa9 }, { 0xe2, 0x82, 0xac }, { 0xf0, 0x9f, 0x98, 0x80 },
+			{ 0xf4, 0x8f, 0xbf, 0xbf }, { 0xc0, 0x80 }, { 0xc1, 0xbf }, { 0xe0, 0x80, 0x80 }, { 0xe0, 0x9f, 0xbf },
+			{ 0xed, 0xa0, 0x80 }, { 0xed, 0xbf, 0xbf }, { 0xed, 0x9f, 0xbf }, { 0xf0, 0x80, 0x80, 0x80 },
+			{ 0xf0, 0x8f, 0xbf, 0xbf }, { 0xf4, 0x90, 0x80, 0x80 }, { 0xf5, 0x80, 0x80, 0x80 }, { 0xf8, 0x88, 0x80, 0x80, 0x80 },
+			{ 0xff }, { 0xfe, 0xff }, { 0x80 }, { 0xe2, 0x82 }, { 0xf0, 0x9f, 0x98 }, { 0xe2, 0x82, 'a' }, { 0xf0, 0x9f, 'a' },
+			{ 0xed, 0xa0 }, { 0xed, 0xa0, 'a' }, { 0xe0, 0xa0 }, { 0xf4, 0x8f } };
+
+	public static void main (String args[]) throws Exception
+	{
+		long count = args.length > 0 ? Long.parseLong(args[0]) : 2000000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		System.out.println("seed " + seed);
+
+		for (int[] special : SPECIAL)
+		{
+			byte[] bytes = new byte[special.length];
+			for (int i = 0; i < bytes.length; i++)
+			{
+				bytes[i] = (byte) special[i];
+			}
+			check(bytes);
+		}
+
+		Random random = new Random(seed);
+		byte[] buffer = new byte[12];
+		for (long n = 0; n < count; n++)
+		{
+			int length = 1 + random.nextInt(buffer.length);
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; i++)
+			{
+				bytes[i] = (byte) (random.nextInt(8) == 0 ? 1 + random.nextInt(255) : BYTES[random.nextInt(BYTES.length)]);
+			}
+			check(bytes);
+		}
+		System.out.println("ok: " + (count + SPECIAL.length) + " sequences");
+	}
+
+	private static void check (byte[] bytes) throws Exception
+	{
+		String expected = chars(new JSONTokener(reader(bytes)));
+		String actual = chars(new JSONByteTokener(bytes));
+		if (!expected.equals(actual))
+		{
+			fail(bytes, "read " + escape(actual) + ", expected " + escape(expected));
+		}
+
+		// The same bytes in a string, with quotes and line ends taken out,
+		// and in an unquoted value.
+		byte[] quoted = new byte[bytes.length + 4];
+		quoted[0] = '[';
+		quoted[1] = '"';
+		for (int i = 0; i < bytes.length; i++)
+		{
+			byte b = bytes[i];
+			quoted[i + 2] = b == '"' || b == '\\' || b == '\n' || b == '\r' ? (byte) 'x' : b;
+		}
+		quoted[bytes.length + 2] = '"';
+		quoted[bytes.length + 3] = ']';
+		compareTrees(quoted);
+
+		byte[] unquoted = new byte[bytes.length + 3];
+		unquoted[0] = '[';
+		unquoted[1] = 'x';
+		for (int i = 0; i < bytes.length; i++)
+		{
+			byte b = bytes[i];
+			unquoted[i + 2] = b >= 0 && b < 'a' ? (byte) 'x' : b;
+		}
+		unquoted[bytes.length + 2] = ']';
+		compareTrees(unquoted);
+	}
+
+	private static void compareTrees (byte[] bytes) throws Exception
+	{
+		String expected = tree(new JSONTokener(reader(bytes)));
+		String actual = tree(new JSONByteTokener(bytes));
+		if (!expected.equals(actual))
+		{
+			fail(bytes, "parsed " + escape(actual) + ", expected " + escape(expected));
+		}
+	}
+
+	private static InputStreamReader reader (byte[] bytes) throws UnsupportedEncodingException
+	{
+		return new InputStreamReader(new ByteArrayInputStream(bytes), "UTF-8");
+	}
+
+	/**
+	 * Reads the characters of a tokener one at a time, up to its end.
+	 */
+	private static String chars (JSONTokener x) throws JSONException
+	{
+		StringBuilder sb = new StringBuilder();
+		for (;;)
+		{
+			char c = x.next();
+			if (c == 0)
+			{
+				return sb.toString();
+			}
+			sb.append(c);
+		}
+	}
+
+	private static String tree (JSONTokener x)
+	{
+		try
+		{
+			return new JSONArray(x).toString();
+		}
+		catch (JSONException e)
+		{
+			return "error";
+		}
+	}
+
+	private static String escape (String string)
+	{
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < string.length(); i++)
+		{
+			char c = string.charAt(i);
+			if (c >= ' ' && c < 0x7f)
+			{
+				sb.append(c);
+			}
+			else
+			{
+				sb.append(String.format("\\u%04x", (int) c));
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static void fail (byte[] bytes, String reason)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (byte b : bytes)
+		{
+			sb.append(String.format(" %02x", b & 0xff));
+		}
+		System.out.println("FAILED:" + sb + ": " + reason);
+		System.exit(1);
+	}
+}
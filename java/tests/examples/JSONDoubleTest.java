@@ -0,0 +1,227 @@
+package examples;
+
+import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Checks that doubles are written with digits that read back as the same
+ * double, with no more significant digits than Double.toString gives, and
+ * with the fewest digits that do (but at least two, as Double.toString has),
+ * over the boundary cases (zeros, subnormals, powers of ten, 2^53 and its
+ * neighbours, the largest double) and millions of random bit patterns and
+ * short decimals. Every double is checked through numberToString,
+ * doubleToString, JSONArray.toString and JSONArray.write. Exits with status
+ * 1 on the first failure.
+ * 
+ * <pre>
+ * javac -cp src -d /tmp/tests tests/examples/JSONDoubleTest.java
+ * java -cp src:/tmp/tests examples.JSONDoubleTest [count] [seed]
+ * </pre>
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ */
+class JSONDoubleTest
+{
+	private static final double TWO_53 = 9007199254740992.0;
+
+	public static void main (String args[]) throws JSONException
+	{
+		long count = args.length > 0 ? Long.parseLong(args[0]) : 1000000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		System.out.println("seed " + seed);
+
+		long checked = 0;
+
+		// Where Double.toString before Java 19 gives more digits than needed.
+		String[][] expected = { { "1e23", "1.0E23" }, { "2e23", "2.0E23" }, { "8.41e21", "8.41E21" },
+				{ "4.9e-324", "4.9E-324" }, { "1.7976931348623157e308", "1.7976931348623157E308" },
+				{ "0.30000000000000004", "0.30000000000000004" }, { "1e-5", "1.0E-5" }, { "0.002", "0.002" } };
+		for (String[] pair : expected)
+		{
+			String string = JSONObject.numberToString(Double.valueOf(pair[0]));
+			if (!string.equals(pair[1]))
+			{
+				fail(Double.parseDouble(pair[0]), string, "expected " + pair[1]);
+			}
+		}
+
+		// Zeros, subnormals and the normal boundary.
+		double[] boundaries = { 0.0, -0.0, Double.MIN_VALUE, 2 * Double.MIN_VALUE, 3 * Double.MIN_VALUE,
+				Double.MIN_NORMAL, Math.nextDown(Double.MIN_NORMAL), Math.nextUp(Double.MIN_NORMAL),
+				Double.MAX_VALUE, Math.nextDown(Double.MAX_VALUE), TWO_53, TWO_53 - 1, TWO_53 + 2, TWO_53 - 0.5,
+				TWO_53 * 2, Long.MAX_VALUE, Long.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, 0.1, 0.2, 0.3,
+				0.1 + 0.2, 1.0 / 3, 2.0 / 3, 5e-324, 1.7976931348623157e308, 123.45, 1e7, 9999999.0, 0.001,
+				0.00099999 };
+		for (double d : boundaries)
+		{
+			checkAround(d);
+			checked += 6;
+		}
+
+		// Powers of ten and their neighbours, across the whole range.
+		for (int e = -324; e <= 308; e++)
+		{
+			checkAround(Double.parseDouble("1e" + e));
+			checked += 6;
+		}
+
+		// Powers of two.
+		for (int e = -1074; e <= 1023; e++)
+		{
+			checkAround(Math.scalb(1.0, e));
+			checked += 6;
+		}
+
+		Random random = new Random(seed);
+		for (long n = 0; n < count; n++)
+		{
+			// Any finite bit pattern.
+			double d = Double.longBitsToDouble(random.nextLong());
+			if (!Double.isNaN(d) && !Double.isInfinite(d))
+			{
+				check(d);
+				checked++;
+			}
+
+			// A short decimal, as the fast path handles.
+			long digits = random.nextInt(4) == 0 ? random.nextLong() % 100000000000000000L : random.nextInt(1000000);
+			d = digits / Math.pow(10, random.nextInt(23));
+			check(d);
+			check(Double.parseDouble(digits + "e" + (random.nextInt(60) - 30)));
+			checked += 2;
+		}
+		System.out.println("ok: " + checked + " doubles");
+	}
+
+	/**
+	 * Checks a double, its negation, and the doubles on either side.
+	 */
+	private static void checkAround (double d) throws JSONException
+	{
+		double[] ds = { d, Math.nextDown(d), Math.nextUp(d) };
+		for (double x : ds)
+		{
+			if (!Double.isInfinite(x))
+			{
+				check(x);
+				check(-x);
+			}
+		}
+	}
+
+	private static void check (double d) throws JSONException
+	{
+		String string = JSONObject.numberToString(Double.valueOf(d));
+		expect(d, string, "numberToString");
+		expect(d, JSONObject.doubleToString(d), "doubleToString");
+
+		JSONArray array = new JSONArray().put(d);
+		expect(d, unwrap(array.toString()), "JSONArray.toString");
+		StringWriter writer = new StringWriter();
+		array.write(writer);
+		expect(d, unwrap(writer.toString()), "JSONArray.write");
+
+		int digits = significantDigits(string);
+		if (digits > significantDigits(Double.toString(d)))
+		{
+			fail(d, string, "more digits than " + Double.toString(d));
+		}
+		if (digits > 2 && d != 0)
+		{
+			// Neither neighbour with one digit fewer reads back.
+			BigDecimal decimal = new BigDecimal(string);
+			for (RoundingMode mode : new RoundingMode[] { RoundingMode.FLOOR, RoundingMode.CEILING })
+			{
+				String shorter = decimal.round(new MathContext(digits - 1, mode)).toString();
+				if (Double.parseDouble(shorter) == d)
+				{
+					fail(d, string, "not the shortest, " + shorter + " reads back");
+				}
+			}
+		}
+	}
+
+	private static void expect (double d, String string, String path)
+	{
+		if (Double.doubleToRawLongBits(Double.parseDouble(string)) != Double.doubleToRawLongBits(d))
+		{
+			fail(d, string, path + " does not read back");
+		}
+	}
+
+	private static String unwrap (String string)
+	{
+		return string.substring(1, string.length() - 1);
+	}
+
+	/**
+	 * The number of digits of a number from its first to its last nonzero
+	 * digit, leaving out the sign and the exponent.
+	 */
+	private static int significantDigits (String string)
+	{
+		int end = string.indexOf('E');
+		if (end < 0)
+		{
+			end = string.length();
+		}
+		int first = -1;
+		int last = -1;
+		int count = 0;
+		for (int i = 0; i < end; i++)
+		{
+			char c = string.charAt(i);
+			if (c >= '0' && c <= '9')
+			{
+				if (c != '0')
+				{
+					if (first < 0)
+					{
+						first = count;
+					}
+					last = count;
+				}
+				count++;
+			}
+		}
+		return first < 0 ? 0 : last - first + 1;
+	}
+
+	private static void fail (double d, String string, String reason)
+	{
+		System.out.println("FAILED: " + Double.toString(d) + " (0x" + Long.toHexString(Double.doubleToRawLongBits(d))
+				+ ") gave \"" + string + "\": " + reason);
+		System.exit(1);
+	}
+}
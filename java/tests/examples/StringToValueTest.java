@@ -0,0 +1,155 @@
+package examples;
+
+import java.util.Random;
+
+import org.json.JSONObject;
+
+/**
+ * Checks JSONObject.stringToValue against the exception driven parse it
+ * replaced, over a few special tokens and millions of random ones. Every
+ * token must give an equal value of the same type. Exits with status 1 on
+ * the first difference.
+ * 
+ * <pre>
+ * javac -encoding UTF-8 -cp src -d /tmp/tests tests/examples/StringToValueTest.java
+ * java -cp src:/tmp/tests examples.StringToValueTest [count] [seed]
+ * </pre>
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ */
+class StringToValueTest
+{
+	/** Characters random tokens are made of, weighted towards numbers. */
+	private static final String ALPHABET = "0123456789012345678901234567890123456789..--++eEeExXdDfFpPaI \t\u0660\uff11";
+
+	private static final String[] SPECIAL = { "", "0", "-0", "+0", "00", "-", "+", ".", "-.", ".5", "5.", "-.5e1", "1e",
+			"1e+", "1e-5", "1E400", "1e-400", "4.9e-324", "2.2250738585072014E-308", "1.7976931348623157e308",
+			"9007199254740993", "0.1", "123.456", "2147483647", "2147483648", "-2147483648", "-2147483649",
+			"9223372036854775807", "9223372036854775808", "-9223372036854775808", "-9223372036854775809",
+			"99999999999999999999", "1.0", "1.5 ", " 1", "0x10", "0x1p3", "1d", "1f", "1D", "Infinity", "-Infinity",
+			"NaN", "true", "TRUE", "False", "null", "NULL", "nul", "1_000", "１２", "1٠", "+-1", "--1",
+			"1e1.5", "1..2", "0x1.8p1", "0xep1", "1.5d ", "1e5\t", "12 ", "123456789012345.6",
+			"1234567890123456.7", "0.000000000000000000001",
+			"1000000000000000000000.5" };
+
+	public static void main (String args[])
+	{
+		long count = args.length > 0 ? Long.parseLong(args[0]) : 5000000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+		System.out.println("seed " + seed);
+
+		for (String token : SPECIAL)
+		{
+			check(token);
+		}
+
+		Random random = new Random(seed);
+		char[] chars = new char[24];
+		for (long n = 0; n < count; n++)
+		{
+			int length = 1 + random.nextInt(random.nextBoolean() ? 6 : chars.length);
+			for (int i = 0; i < length; i++)
+			{
+				chars[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+			}
+			// Most tokens start like a number, so that they reach the scan.
+			if (random.nextInt(4) != 0)
+			{
+				chars[0] = (char) ('0' + random.nextInt(10));
+			}
+			check(new String(chars, 0, length));
+		}
+		System.out.println("ok: " + (count + SPECIAL.length) + " tokens");
+	}
+
+	private static void check (String token)
+	{
+		Object expected = reference(token);
+		Object actual = JSONObject.stringToValue(token);
+		if (!expected.equals(actual) || expected.getClass() != actual.getClass())
+		{
+			System.out.println("FAILED: \"" + token + "\" gave " + describe(actual) + ", expected " + describe(expected));
+			System.exit(1);
+		}
+	}
+
+	private static String describe (Object value)
+	{
+		return value.getClass().getSimpleName() + " " + value;
+	}
+
+	/**
+	 * stringToValue as it was before the single pass scan.
+	 */
+	private static Object reference (String string)
+	{
+		if (string.equals(""))
+		{
+			return string;
+		}
+		if (string.equalsIgnoreCase("true"))
+		{
+			return Boolean.TRUE;
+		}
+		if (string.equalsIgnoreCase("false"))
+		{
+			return Boolean.FALSE;
+		}
+		if (string.equalsIgnoreCase("null"))
+		{
+			return JSONObject.NULL;
+		}
+		char b = string.charAt(0);
+		if ((b >= '0' && b <= '9') || b == '.' || b == '-' || b == '+')
+		{
+			try
+			{
+				if (string.indexOf('.') > -1 || string.indexOf('e') > -1 || string.indexOf('E') > -1)
+				{
+					Double d = Double.valueOf(string);
+					if (!d.isInfinite() && !d.isNaN())
+					{
+						return d;
+					}
+				}
+				else
+				{
+					Long myLong = Long.valueOf(string);
+					if (myLong.longValue() == myLong.intValue())
+					{
+						return Integer.valueOf(myLong.intValue());
+					}
+					return myLong;
+				}
+			}
+			catch (Exception ignore)
+			{
+			}
+		}
+		return string;
+	}
+}
@@ -0,0 +1,392 @@
+package examples;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONPath;
+
+import pubnub.Callback;
+import pubnub.ObjectCallback;
+import pubnub.Pubnub;
+import pubnub.PubnubException;
+import pubnub.Router;
+import pubnub.Subscription;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks how subscriptions deliver messages, against a local server that
+ * answers each subscribe request by its time token. A callback that throws
+ * must end the subscription with its exception, with no message delivered
+ * twice and no request repeated. A message that can not be decrypted must be
+ * skipped, whether it is decrypted up front or lazily. Exits with status 1 on the first failure.
+ * 
+ * <pre>
+ * javac -cp src -d /tmp/tests tests/examples/SubscriptionTest.java
+ * java -cp src:/tmp/tests examples.SubscriptionTest
+ * </pre>
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ * 
+ * PubNub Real-time Cloud-Hosted Push API and Push Notification Client
+ * Frameworks Copyright (c) 2011 TopMambo Inc. http://www.pubnub.com/
+ * http://www.pubnub.com/terms
+ */
+class SubscriptionTest
+{
+	/** The responses of the server, by time token. */
+	private static final Map<String, String> responses = new HashMap<String, String>();
+	private static final AtomicInteger requests = new AtomicInteger();
+
+	private static String origin;
+
+	public static void main (String args[]) throws Exception
+	{
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new Responder());
+		server.start();
+		origin = "http://127.0.0.1:" + server.getAddress().getPort();
+		try
+		{
+			test_callback_throws();
+			test_routed_callback_throws();
+			test_object_callback_throws();
+			test_undecryptable_skipped();
+			test_lazy_undecryptable_skipped();
+		}
+		finally
+		{
+			server.stop(0);
+		}
+		System.out.println("ok");
+	}
+
+	public static void test_callback_throws ()
+	{
+		serve("[[{\"n\":1},{\"n\":2},{\"n\":3}],\"100\"]", "[[{\"n\":4}],\"200\"]");
+		Recorder recorder = new Recorder();
+		Subscription subscription = new LocalPubnub().subscribe("test", recorder);
+		expectFailure("callback", runToEnd(subscription), recorder.received);
+	}
+
+	public static void test_routed_callback_throws () throws JSONException
+	{
+		serve("[[{\"n\":1},{\"n\":2},{\"n\":3}],\"100\"]", "[[{\"n\":4}],\"200\"]");
+		final Recorder recorder = new Recorder();
+		final JSONPath paths = JSONPath.compile("$.n");
+		Subscription subscription = new LocalPubnub().subscribe("test", new Router()
+		{
+			public JSONPath getPaths ()
+			{
+				return paths;
+			}
+
+			public Callback route (Object[] values)
+			{
+				return recorder;
+			}
+		});
+		expectFailure("routed callback", runToEnd(subscription), recorder.received);
+	}
+
+	public static void test_object_callback_throws ()
+	{
+		serve("[[{\"n\":1},{\"n\":2},{\"n\":3}],\"100\"]", "[[{\"n\":4}],\"200\"]");
+		final List<Integer> received = new ArrayList<Integer>();
+		Subscription subscription = new LocalPubnub().subscribe("test", Reading.class, new ObjectCallback<Reading>()
+		{
+			public boolean execute (Reading message)
+			{
+				received.add(message.getN());
+				if (message.getN() == 2)
+				{
+					throw new CallbackFailure();
+				}
+				return true;
+			}
+		});
+		expectFailure("object callback", runToEnd(subscription), received);
+	}
+
+	public static void test_undecryptable_skipped () throws JSONException
+	{
+		test_undecryptable_skipped("eager", false);
+	}
+
+	public static void test_lazy_undecryptable_skipped () throws JSONException
+	{
+		test_undecryptable_skipped("lazy", true);
+	}
+
+	/**
+	 * Sends an undecryptable message between encrypted ones, and checks that
+	 * only it is skipped.
+	 */
+	private static void test_undecryptable_skipped (String name, boolean lazy) throws JSONException
+	{
+		LocalPubnub pubnub = new LocalPubnub(new byte[16]);
+		serve("[[" + pubnub.encrypt(1) + ",[\"bm90IGEgbWVzc2FnZQ==\"]," + pubnub.encrypt(3) + "],\"100\"]",
+				"[[\"garbage\"," + pubnub.encrypt(4) + "],\"200\"]");
+		Recorder recorder = new Recorder(4);
+		Throwable thrown = runToEnd(pubnub.subscribe("test", recorder, lazy));
+		if (thrown != null)
+		{
+			fail(name + ": threw " + thrown);
+		}
+		if (!recorder.received.equals(Arrays.asList(1, 3, 4)))
+		{
+			fail(name + ": delivered " + recorder.received);
+		}
+		if (requests.get() != 2)
+		{
+			fail(name + ": " + requests.get() + " requests");
+		}
+	}
+
+	/**
+	 * Checks that the callback failed on the second message, and that the
+	 * first response was neither requested nor delivered again.
+	 */
+	private static void expectFailure (String name, Throwable thrown, List<Integer> received)
+	{
+		if (!(thrown instanceof CallbackFailure))
+		{
+			fail(name + ": expected the callback's exception, got " + thrown);
+		}
+		if (!received.equals(Arrays.asList(1, 2)))
+		{
+			fail(name + ": delivered " + received);
+		}
+		if (requests.get() != 1)
+		{
+			fail(name + ": " + requests.get() + " requests");
+		}
+	}
+
+	/**
+	 * Sets the responses of the server, the first to time token 0 and each
+	 * next to the time token given by the one before.
+	 */
+	private static void serve (String... bodies)
+	{
+		synchronized (responses)
+		{
+			responses.clear();
+			String timetoken = "0";
+			for (String body : bodies)
+			{
+				responses.put(timetoken, body);
+				timetoken = body.substring(body.lastIndexOf(',') + 2, body.length() - 2);
+			}
+		}
+		requests.set(0);
+	}
+
+	/**
+	 * Runs a subscription until it returns or throws, or a few seconds pass.
+	 * 
+	 * @return What the subscription threw, or null.
+	 */
+	private static Throwable runToEnd (final Subscription subscription)
+	{
+		final Throwable[] thrown = new Throwable[1];
+		Thread thread = new Thread()
+		{
+			public void run ()
+			{
+				try
+				{
+					subscription.run();
+				}
+				catch (Throwable t)
+				{
+					thrown[0] = t;
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		try
+		{
+			thread.join(5000);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		if (thread.isAlive())
+		{
+			subscription.unsubscribe();
+			fail("subscription still running after " + requests.get() + " requests");
+		}
+		return thrown[0];
+	}
+
+	private static void fail (String reason)
+	{
+		System.out.println("FAILED: " + reason);
+		System.exit(1);
+	}
+
+	/**
+	 * Records the "n" of each message, throws on the second, and cancels the
+	 * subscription on the last.
+	 */
+	private static class Recorder implements Callback
+	{
+		private final List<Integer> received = new ArrayList<Integer>();
+		private final int last;
+
+		private Recorder ()
+		{
+			this(Integer.MAX_VALUE);
+		}
+
+		private Recorder (int last)
+		{
+			this.last = last;
+		}
+
+		public boolean execute (JSONObject message)
+		{
+			int n;
+			try
+			{
+				// Throws if a lazy message can not be decrypted.
+				n = message.getInt("n");
+			}
+			catch (JSONException e)
+			{
+				throw new IllegalStateException(e);
+			}
+			received.add(n);
+			if (n == 2)
+			{
+				throw new CallbackFailure();
+			}
+			return n != last;
+		}
+	}
+
+	/** What user code might throw, such as a failed nested publish. */
+	private static class CallbackFailure extends PubnubException
+	{
+		private static final long serialVersionUID = 1L;
+
+		private CallbackFailure ()
+		{
+			super("callback failed");
+		}
+	}
+
+	public static class Reading
+	{
+		private int n;
+
+		public int getN ()
+		{
+			return n;
+		}
+
+		public void setN (int n)
+		{
+			this.n = n;
+		}
+	}
+
+	/** A Pubnub that connects to the local server. */
+	private static class LocalPubnub extends Pubnub
+	{
+		private LocalPubnub ()
+		{
+			super("demo", "demo");
+		}
+
+		private LocalPubnub (byte[] cipher_key)
+		{
+			super("demo", "demo", "demo", cipher_key, false);
+		}
+
+		/**
+		 * @return The encrypted text of a message with a given "n".
+		 */
+		private String encrypt (int n) throws JSONException
+		{
+			return encrypt(new JSONObject().put("n", n));
+		}
+
+		@Override
+		protected URLConnection prepareConnection (Iterable<String> url_components)
+		{
+			return prepareConnection(origin, url_components);
+		}
+	}
+
+	/**
+	 * Answers a subscribe request by its time token, the last part of its
+	 * path. A time token with no response waits, as a long poll does, and
+	 * gives no messages.
+	 */
+	private static class Responder implements HttpHandler
+	{
+		public void handle (HttpExchange exchange) throws IOException
+		{
+			requests.incrementAndGet();
+			String path = exchange.getRequestURI().getPath();
+			String timetoken = path.substring(path.lastIndexOf('/') + 1);
+			String body;
+			synchronized (responses)
+			{
+				body = responses.get(timetoken);
+			}
+			if (body == null)
+			{
+				try
+				{
+					Thread.sleep(200);
+				}
+				catch (InterruptedException ignored)
+				{
+				}
+				body = "[[],\"" + timetoken + "\"]";
+			}
+			byte[] bytes = body.getBytes("UTF-8");
+			exchange.sendResponseHeaders(200, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		}
+	}
+}